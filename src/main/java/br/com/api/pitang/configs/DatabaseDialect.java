@@ -0,0 +1,28 @@
+package br.com.api.pitang.configs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * banco em uso, para os comandos sem sintaxe comum entre o PostgreSQL e o H2 dos
+ * testes, como o upsert (insert ... on conflict no PostgreSQL, merge ... using no H2)
+ */
+@Component
+public class DatabaseDialect {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgreSQL;
+
+    public boolean isPostgreSQL() {
+        Boolean result = postgreSQL;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            postgreSQL = result = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return result;
+    }
+}
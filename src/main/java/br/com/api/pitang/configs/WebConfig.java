@@ -1,7 +1,6 @@
 package br.com.api.pitang.configs;
 
 import br.com.api.pitang.services.CarService;
-import br.com.api.pitang.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -13,12 +12,11 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private CarService carService;
 
-    @Autowired
-    private UserService userService;
-
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(new CarInterceptor(carService, userService)).addPathPatterns("/api/cars/{id}");
+        registry.addInterceptor(new CarInterceptor(carService))
+                .addPathPatterns("/api/cars/{id}")
+                .excludePathPatterns("/api/cars/usage");
     }
 
 }
@@ -0,0 +1,86 @@
+package br.com.api.pitang.configs.security;
+
+import static java.lang.Integer.parseInt;
+import static java.lang.System.nanoTime;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import static java.util.regex.Pattern.compile;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * BCrypt com custo calibrado para a maquina onde a api esta rodando. Hashes com
+ * custo fora da faixa aceita (custo calibrado +/- tolerancia, limitado pelo minimo
+ * e maximo configurados) sao sinalizados em upgradeEncoding para serem refeitos
+ */
+@Slf4j
+public class AdaptiveBCryptPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = compile("^\\$2[aby]?\\$(\\d{2})\\$");
+    private static final int CALIBRATION_STRENGTH = 8;
+
+    private final BCryptPasswordEncoder delegate;
+
+    @Getter
+    private final int strength;
+    private final int minAcceptedStrength;
+    private final int maxAcceptedStrength;
+
+    public AdaptiveBCryptPasswordEncoder(int strength, int tolerance, int minStrength, int maxStrength) {
+        this.strength = strength;
+        this.minAcceptedStrength = Math.max(minStrength, strength - tolerance);
+        this.maxAcceptedStrength = Math.min(maxStrength, strength + tolerance);
+        this.delegate = new BCryptPasswordEncoder(strength);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null)
+            return false;
+
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        if (!matcher.find())
+            return false;
+
+        int cost = parseInt(matcher.group(1));
+        return cost < minAcceptedStrength || cost > maxAcceptedStrength;
+    }
+
+    /**
+     * mede o tempo de um hash com custo baixo e extrapola o custo que mais se aproxima
+     * do tempo alvo, cada ponto de custo dobra o tempo do BCrypt
+     * @param targetMillis tempo alvo de um hash em milissegundos
+     * @return custo entre minStrength e maxStrength
+     */
+    public static int calibrate(long targetMillis, int minStrength, int maxStrength) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(CALIBRATION_STRENGTH);
+        probe.encode("calibration");
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = nanoTime();
+            probe.encode("calibration");
+            best = Math.min(best, nanoTime() - start);
+        }
+
+        double millis = Math.max(best, 1L) / 1_000_000.0;
+        int strength = CALIBRATION_STRENGTH + (int) Math.round(Math.log(targetMillis / millis) / Math.log(2));
+        strength = Math.max(minStrength, Math.min(maxStrength, strength));
+
+        log.info("BCrypt calibrado com custo {} (custo {} levou {} ms, alvo {} ms)",
+                strength, CALIBRATION_STRENGTH, String.format("%.2f", millis), targetMillis);
+        return strength;
+    }
+}
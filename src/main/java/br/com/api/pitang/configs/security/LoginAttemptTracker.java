@@ -0,0 +1,189 @@
+package br.com.api.pitang.configs.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import static java.lang.System.currentTimeMillis;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * contador de tentativas de login com falha por login e por ip do cliente, consultado
+ * antes do BCrypt para descartar ataques de forca bruta sem gastar cpu com o hash.
+ * <p>
+ * Cada chave cai em uma posicao (stripe) de um array de tamanho fixo, entao a memoria
+ * usada nao cresce com a quantidade de logins ou ips atacantes. Cada posicao guarda em
+ * um unico long a janela atual, a contagem da janela anterior e a contagem da atual,
+ * atualizados via CAS sem lock. A janela deslizante e estimada ponderando a contagem
+ * anterior pelo tempo que ainda falta da janela atual.
+ * <p>
+ * Nas posicoes de login o long guarda tambem uma impressao digital (outro hash) do login
+ * que gerou as falhas. Um login com sucesso so zera a posicao quando todas as falhas
+ * vieram dele, falhas de outros logins na mesma posicao expiram apenas com a janela
+ */
+@Component
+public class LoginAttemptTracker {
+
+    private static final int COUNT_BITS = 12;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int WINDOW_BITS = 24;
+    private static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+    private static final int FINGERPRINT_SHIFT = 2 * COUNT_BITS + WINDOW_BITS;
+    private static final long FINGERPRINT_MASK = (1L << (64 - FINGERPRINT_SHIFT)) - 1;
+
+    /**
+     * impressao digital de uma posicao com falhas de mais de um login (ou de ip)
+     */
+    private static final long SHARED = 0L;
+
+    private final AtomicLongArray loginStripes;
+    private final AtomicLongArray ipStripes;
+    private final int stripeMask;
+    private final int seed = new SecureRandom().nextInt();
+    private final int fingerprintSeed = new SecureRandom().nextInt();
+
+    private final long windowMillis;
+    private final int maxPerLogin;
+    private final int maxPerIp;
+
+    private final Counter rejected;
+
+    public LoginAttemptTracker(@Value("${security.login-attempts.stripes:65536}") int stripes,
+                               @Value("${security.login-attempts.window-seconds:300}") long windowSeconds,
+                               @Value("${security.login-attempts.max-per-login:5}") int maxPerLogin,
+                               @Value("${security.login-attempts.max-per-ip:20}") int maxPerIp,
+                               MeterRegistry registry) {
+        int size = Integer.highestOneBit(Math.max(stripes, 2) - 1) << 1;
+
+        this.loginStripes = new AtomicLongArray(size);
+        this.ipStripes = new AtomicLongArray(size);
+        this.stripeMask = size - 1;
+        this.windowMillis = windowSeconds * 1000;
+        this.maxPerLogin = maxPerLogin;
+        this.maxPerIp = maxPerIp;
+        this.rejected = registry.counter("security.login.attempts.rejected");
+    }
+
+    /**
+     * @param login login informado na tentativa
+     * @param clientIp ip do cliente, pode ser nulo
+     * @return true caso o login ou o ip tenham ultrapassado o limite de falhas da janela
+     */
+    public boolean isBlocked(String login, String clientIp) {
+        long window = currentWindow();
+        boolean blocked = estimate(loginStripes, stripe(normalize(login)), window) >= maxPerLogin
+                || (clientIp != null && estimate(ipStripes, stripe(clientIp), window) >= maxPerIp);
+
+        if (blocked)
+            rejected.increment();
+        return blocked;
+    }
+
+    public void recordFailure(String login, String clientIp) {
+        long window = currentWindow();
+        String key = normalize(login);
+        increment(loginStripes, stripe(key), window, fingerprint(key));
+        if (clientIp != null)
+            increment(ipStripes, stripe(clientIp), window, SHARED);
+    }
+
+    /**
+     * zera as falhas do login apos uma autenticacao com sucesso, apenas se todas as
+     * falhas da posicao vieram desse login. As falhas do ip continuam valendo ate o fim
+     * da janela
+     */
+    public void recordSuccess(String login) {
+        String key = normalize(login);
+        int index = stripe(key);
+        long fingerprint = fingerprint(key);
+        long state;
+        do {
+            state = loginStripes.get(index);
+            if ((state >>> FINGERPRINT_SHIFT) != fingerprint)
+                return;
+        } while (!loginStripes.compareAndSet(index, state, 0L));
+    }
+
+    private long currentWindow() {
+        return (currentTimeMillis() / windowMillis) & WINDOW_MASK;
+    }
+
+    private double estimate(AtomicLongArray stripes, int index, long window) {
+        long state = stripes.get(index);
+        long stateWindow = (state >>> (2 * COUNT_BITS)) & WINDOW_MASK;
+        long previous = (state >>> COUNT_BITS) & COUNT_MASK;
+        long current = state & COUNT_MASK;
+
+        if (stateWindow == ((window - 1) & WINDOW_MASK)) {
+            previous = current;
+            current = 0;
+        } else if (stateWindow != window) {
+            return 0;
+        }
+
+        double elapsed = (double) (currentTimeMillis() % windowMillis) / windowMillis;
+        return previous * (1 - elapsed) + current;
+    }
+
+    private void increment(AtomicLongArray stripes, int index, long window, long fingerprint) {
+        long state;
+        long next;
+        do {
+            state = stripes.get(index);
+            long stateWindow = (state >>> (2 * COUNT_BITS)) & WINDOW_MASK;
+            long previous = (state >>> COUNT_BITS) & COUNT_MASK;
+            long current = state & COUNT_MASK;
+            long owner = state >>> FINGERPRINT_SHIFT;
+
+            if (stateWindow == ((window - 1) & WINDOW_MASK)) {
+                previous = current;
+                current = 0;
+            } else if (stateWindow != window) {
+                previous = 0;
+                current = 0;
+            }
+
+            if (previous == 0 && current == 0)
+                owner = fingerprint;
+            else if (owner != fingerprint)
+                owner = SHARED;
+
+            current = Math.min(current + 1, COUNT_MASK);
+            next = (owner << FINGERPRINT_SHIFT) | (window << (2 * COUNT_BITS)) | (previous << COUNT_BITS) | current;
+        } while (!stripes.compareAndSet(index, state, next));
+    }
+
+    /**
+     * a semente aleatoria por instancia impede que um atacante escolha logins
+     * que caiam na mesma posicao de um usuario legitimo
+     */
+    int stripe(String key) {
+        return mix(key.hashCode() ^ seed) & stripeMask;
+    }
+
+    /**
+     * hash independente do usado na posicao, nunca igual a SHARED
+     */
+    private long fingerprint(String key) {
+        long fingerprint = mix(key.hashCode() ^ fingerprintSeed) & FINGERPRINT_MASK;
+        return fingerprint == SHARED ? 1L : fingerprint;
+    }
+
+    /**
+     * finalizador de 32 bits do murmur3 (fmix32): cada bit da entrada afeta todos os bits
+     * da saida, entao chaves vizinhas (ips ou logins sequenciais) nao caem juntas
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private String normalize(String login) {
+        return login == null ? "" : login.toLowerCase();
+    }
+}
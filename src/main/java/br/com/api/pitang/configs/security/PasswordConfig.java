@@ -0,0 +1,38 @@
+package br.com.api.pitang.configs.security;
+
+import static br.com.api.pitang.configs.security.AdaptiveBCryptPasswordEncoder.calibrate;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class PasswordConfig {
+
+    @Value("${security.password.target-hash-millis:100}")
+    private long targetHashMillis = 100;
+
+    @Value("${security.password.min-strength:10}")
+    private int minStrength = 10;
+
+    @Value("${security.password.max-strength:16}")
+    private int maxStrength = 16;
+
+    @Value("${security.password.strength-tolerance:1}")
+    private int strengthTolerance = 1;
+
+    /**
+     * servico de hash unico da api, usado tanto no login (AuthenticationManager) quanto no
+     * cadastro/atualizacao de usuarios. O custo do BCrypt e calibrado na subida para o tempo
+     * alvo configurado e o hash roda em um pool limitado, nunca nas threads do Tomcat
+     */
+    @Bean
+    public BoundedPasswordEncoder passwordEncode(MeterRegistry registry,
+                                                 @Value("${security.password.pool-size:0}") int poolSize,
+                                                 @Value("${security.password.queue-capacity:64}") int queueCapacity,
+                                                 @Value("${security.password.timeout-millis:5000}") long timeoutMillis) {
+        int strength = calibrate(targetHashMillis, minStrength, maxStrength);
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(strength, strengthTolerance, minStrength, maxStrength);
+        return new BoundedPasswordEncoder(encoder, poolSize, queueCapacity, timeoutMillis, registry);
+    }
+}
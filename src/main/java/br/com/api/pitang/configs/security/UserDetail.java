@@ -16,4 +16,4 @@ public class UserDetail extends org.springframework.security.core.userdetails.Us
         super(user.getLogin(), user.getPassword(), List.of(user));
         this.user = user;
     }
-}
\ No newline at end of file
+}
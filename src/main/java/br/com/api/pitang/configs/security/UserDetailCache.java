@@ -0,0 +1,180 @@
+package br.com.api.pitang.configs.security;
+
+import br.com.api.pitang.data.models.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import static java.lang.System.currentTimeMillis;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+
+/**
+ * cache dos usuarios carregados pelo UserDetailService, chaveado pelo login e com
+ * validade curta. Guarda uma copia apenas com os campos simples do usuario (sem
+ * os carros) e cada escrita no usuario invalida o cache na hora e de novo apos o
+ * commit, para que troca de senha e exclusao valham ja na proxima requisicao
+ */
+@Component
+public class UserDetailCache {
+
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final long ttlMillis;
+    private final int maxSize;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserDetailCache(@Value("${security.user-cache.ttl-seconds:60}") long ttlSeconds,
+                           @Value("${security.user-cache.max-size:10000}") int maxSize,
+                           MeterRegistry registry) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxSize = maxSize;
+        this.hits = registry.counter("security.user.cache.gets", "result", "hit");
+        this.misses = registry.counter("security.user.cache.gets", "result", "miss");
+        registry.gaugeMapSize("security.user.cache.size", null, cache);
+    }
+
+    /**
+     * @param login login ja em minusculo
+     * @return copia do usuario ou null caso nao esteja no cache ou tenha vencido
+     */
+    public User get(String login) {
+        CachedUser cached = cache.get(login);
+
+        if (cached != null && cached.expiresAt > currentTimeMillis()) {
+            hits.increment();
+            return cached.user;
+        }
+
+        if (cached != null)
+            cache.remove(login, cached);
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * geracao atual do cache, deve ser lida antes de consultar o banco
+     * e repassada ao put
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * guarda o usuario apenas se nenhuma invalidacao aconteceu desde que ele foi lido
+     * do banco, evitando que uma leitura concorrente recoloque dados antigos no cache
+     * @param generation valor de generation() lido antes da consulta
+     */
+    public void put(String login, User user, long generation) {
+        if (cache.size() >= maxSize)
+            evict();
+
+        CachedUser cached = new CachedUser(snapshot(user), currentTimeMillis() + ttlMillis);
+        cache.put(login, cached);
+
+        if (this.generation.get() != generation)
+            cache.remove(login, cached);
+    }
+
+    /**
+     * remove o usuario do cache agora e novamente apos o commit da transacao atual
+     * @param userId id do usuario alterado ou removido
+     */
+    public void invalidate(Long userId) {
+        if (userId == null)
+            return;
+
+        remove(userId);
+        if (isSynchronizationActive())
+            registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(userId);
+                }
+            });
+    }
+
+    /**
+     * limpa todo o cache agora e novamente apos o commit, usado em exclusoes em massa
+     */
+    public void invalidateAll() {
+        clear();
+        if (isSynchronizationActive())
+            registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public double hitCount() {
+        return hits.count();
+    }
+
+    public double missCount() {
+        return misses.count();
+    }
+
+    private void remove(Long userId) {
+        generation.incrementAndGet();
+        cache.values().removeIf(cached -> userId.equals(cached.user.getId()));
+    }
+
+    private void evict() {
+        long now = currentTimeMillis();
+        cache.values().removeIf(cached -> cached.expiresAt <= now);
+
+        int toRemove = cache.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<String> keys = cache.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static User snapshot(User user) {
+        return User.builder()
+                .id(user.getId())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .birthDate(user.getBirthDate())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .password(user.getPassword())
+                .phone(user.getPhone())
+                .lastLogin(user.getLastLogin())
+                .createdAt(user.getCreatedAt())
+                .totalUsageCounter(user.getTotalUsageCounter())
+                .build();
+    }
+
+    private static final class CachedUser {
+
+        private final User user;
+        private final long expiresAt;
+
+        private CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.api.pitang.configs.security;
 
+import br.com.api.pitang.data.models.User;
 import br.com.api.pitang.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,12 +14,28 @@ public class UserDetailService implements UserDetailsService {
     @Autowired
     private UserService service;
 
+    @Autowired
+    private UserDetailCache cache;
+
     public UserDetailService(UserService service) {
         this.service = service;
     }
 
+    /**
+     * o usuario vem do cache quando possivel, cada chamada recebe um UserDetail novo
+     * porque o AuthenticationManager apaga a senha do UserDetail apos o login
+     */
     @Override
     public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
-        return new UserDetail(service.findByLogin(login));
+        String key = login.toLowerCase();
+        User user = cache.get(key);
+
+        if (user == null) {
+            long generation = cache.generation();
+            user = service.findByLogin(key);
+            cache.put(key, user, generation);
+        }
+
+        return new UserDetail(user);
     }
 }
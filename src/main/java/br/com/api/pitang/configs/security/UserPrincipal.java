@@ -0,0 +1,60 @@
+package br.com.api.pitang.configs.security;
+
+import br.com.api.pitang.data.models.User;
+import java.io.Serializable;
+import java.security.Principal;
+import static java.util.Collections.singletonList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * usuario autenticado guardado no SecurityContext durante a requisicao. Contem
+ * apenas o id, o login e o perfil, sem senha e sem a entidade do JPA, assim
+ * nenhuma requisicao carrega relacionamentos lazy por meio do usuario logado
+ */
+@Getter
+@EqualsAndHashCode
+public final class UserPrincipal implements Principal, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<String, List<GrantedAuthority>> AUTHORITIES = new ConcurrentHashMap<>();
+
+    private final Long id;
+    private final String login;
+    private final String authority;
+
+    public UserPrincipal(Long id, String login, String authority) {
+        this.id = id;
+        this.login = login;
+        this.authority = authority;
+    }
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getLogin(), user.getAuthority());
+    }
+
+    /**
+     * a lista de perfis e compartilhada entre todos os usuarios com o mesmo
+     * perfil, evitando uma alocacao por requisicao
+     */
+    public List<GrantedAuthority> getAuthorities() {
+        return AUTHORITIES.computeIfAbsent(authority,
+                role -> singletonList(new SimpleGrantedAuthority(role)));
+    }
+
+    @Override
+    public String getName() {
+        return login;
+    }
+
+    @Override
+    public String toString() {
+        return login;
+    }
+}
@@ -0,0 +1,125 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Base64.getEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * cache das claims de tokens ja verificados, evitando refazer o HMAC e o
+ * parse do json a cada requisicao com o mesmo token. A chave e o digest
+ * SHA-256 do token e cada entrada vale ate o "exp" do proprio token
+ */
+@Component
+public class JwtClaimsCache {
+
+    @Value("${security.jwt.claims-cache.max-size:10000}")
+    private int maxSize = 10000;
+
+    private final Map<String, CachedClaims> cache = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    public JwtClaimsCache(MeterRegistry registry) {
+        hits = registry.counter("security.jwt.claims.cache.gets", "result", "hit");
+        misses = registry.counter("security.jwt.claims.cache.gets", "result", "miss");
+        registry.gaugeMapSize("security.jwt.claims.cache.size", null, cache);
+    }
+
+    /**
+     * @param token token jwt enviado no header Authorization
+     * @return as claims ja verificadas ou null caso o token nao esteja
+     * no cache ou ja tenha expirado
+     */
+    public Claims get(String token) {
+        String digest = digest(token);
+        CachedClaims cached = cache.get(digest);
+
+        if (cached != null && cached.expiresAt > currentTimeMillis()) {
+            hits.increment();
+            return cached.claims;
+        }
+
+        if (cached != null)
+            cache.remove(digest, cached);
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * guarda as claims de um token que acabou de ser verificado, quando o cache
+     * esta cheio remove os expirados e, se ainda nao houver espaco, descarta
+     * uma parte das entradas para manter o tamanho limitado
+     */
+    public void put(String token, Claims claims) {
+        if (claims.getExpiration() == null)
+            return;
+
+        if (cache.size() >= maxSize)
+            evict();
+
+        cache.put(digest(token), new CachedClaims(claims, claims.getExpiration().getTime()));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public double hitCount() {
+        return hits.count();
+    }
+
+    public double missCount() {
+        return misses.count();
+    }
+
+    private void evict() {
+        long now = currentTimeMillis();
+        cache.values().removeIf(cached -> cached.expiresAt <= now);
+
+        int toRemove = cache.size() - maxSize + Math.max(1, maxSize / 10);
+        Iterator<String> keys = cache.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static String digest(String token) {
+        return getEncoder().encodeToString(SHA_256.get().digest(token.getBytes(US_ASCII)));
+    }
+
+    private static final class CachedClaims {
+
+        private final Claims claims;
+        private final long expiresAt;
+
+        private CachedClaims(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
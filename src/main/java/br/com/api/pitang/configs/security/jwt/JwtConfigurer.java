@@ -12,13 +12,19 @@ public class JwtConfigurer extends SecurityConfigurerAdapter<DefaultSecurityFilt
     @Autowired
     private JwtTokenProvider tokenProvider;
 
-    public JwtConfigurer(JwtTokenProvider tokenProvider) {
+    private final String[] publicPaths;
+
+    /**
+     * @param publicPaths rotas liberadas sem autenticacao, o filtro nem le o token nelas
+     */
+    public JwtConfigurer(JwtTokenProvider tokenProvider, String... publicPaths) {
         this.tokenProvider = tokenProvider;
+        this.publicPaths = publicPaths;
     }
 
     @Override
     public void configure(HttpSecurity http) throws Exception {
-        JwtTokenFilter filter = new JwtTokenFilter(tokenProvider);
+        JwtTokenFilter filter = new JwtTokenFilter(tokenProvider, publicPaths);
         http.addFilterBefore(filter, UsernamePasswordAuthenticationFilter.class);
     }
 }
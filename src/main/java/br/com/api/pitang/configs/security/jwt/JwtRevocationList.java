@@ -0,0 +1,123 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import br.com.api.pitang.data.models.RevokedToken;
+import br.com.api.pitang.repositories.RevokedTokenRepository;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import static java.lang.System.currentTimeMillis;
+import java.time.LocalDateTime;
+import static java.time.LocalDateTime.now;
+import static java.time.ZoneId.systemDefault;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * lista de tokens revogados. A tabela revoked_tokens e a fonte da verdade e fica
+ * espelhada em memoria em um bloom filter e em um mapa exato (jti -> exp), assim
+ * a verificacao de cada requisicao nao consulta o banco e o caso comum, token nao
+ * revogado, e respondido apenas pelo bloom filter
+ */
+@Component
+public class JwtRevocationList {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Value("${security.jwt.revocation.expected-entries:10000}")
+    private int expectedEntries = 10000;
+
+    @Autowired
+    private RevokedTokenRepository repository;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile RevokedTokenBloomFilter bloomFilter;
+
+    public JwtRevocationList(MeterRegistry registry) {
+        registry.gaugeMapSize("security.jwt.revoked.size", null, revoked);
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * @param claims claims ja verificadas do token
+     * @return true caso o "jti" do token tenha sido revogado e o token ainda nao tenha expirado
+     */
+    public boolean isRevoked(Claims claims) {
+        String jti = claims.getId();
+        if (jti == null || !bloomFilter.mightContain(jti))
+            return false;
+
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > currentTimeMillis();
+    }
+
+    /**
+     * revoga o token ate o seu "exp", tokens sem "jti" (emitidos antes da revogacao
+     * existir) nao podem ser revogados e apenas expiram
+     * @param claims claims ja verificadas do token
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void revoke(Claims claims) {
+        if (claims.getId() == null || claims.getExpiration() == null)
+            return;
+
+        long expiresAt = claims.getExpiration().getTime();
+        repository.save(RevokedToken.builder()
+                .jti(claims.getId())
+                .expiresAt(LocalDateTime.ofInstant(claims.getExpiration().toInstant(), systemDefault()))
+                .revokedAt(now())
+                .build());
+
+        synchronized (revoked) {
+            revoked.put(claims.getId(), expiresAt);
+            bloomFilter.put(claims.getId());
+        }
+    }
+
+    /**
+     * remove do banco as revogacoes cujo token ja expirou e remonta o bloom filter
+     * e o mapa a partir da tabela, descartando os bits das entradas vencidas e
+     * trazendo revogacoes feitas por outras instancias da api
+     */
+    @Scheduled(fixedDelayString = "${security.jwt.revocation.refresh-millis:60000}")
+    @Transactional(rollbackFor = Exception.class)
+    public void evictExpired() {
+        repository.deleteExpired(now());
+        reload();
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * as revogacoes locais ainda validas sao mantidas mesmo que a leitura do banco
+     * tenha acontecido antes do commit delas, o lock com o revoke garante que
+     * nenhuma revogacao fique fora do filtro novo
+     */
+    private void reload() {
+        Map<String, Long> current = new ConcurrentHashMap<>();
+        repository.findAllByExpiresAtAfter(now()).forEach(token -> current.put(token.getJti(),
+                token.getExpiresAt().atZone(systemDefault()).toInstant().toEpochMilli()));
+
+        synchronized (revoked) {
+            long timeNow = currentTimeMillis();
+            revoked.values().removeIf(expiresAt -> expiresAt <= timeNow);
+            revoked.putAll(current);
+
+            RevokedTokenBloomFilter filter = new RevokedTokenBloomFilter(
+                    Math.max(expectedEntries, revoked.size() * 2), FALSE_POSITIVE_RATE);
+            revoked.keySet().forEach(filter::put);
+            bloomFilter = filter;
+        }
+    }
+}
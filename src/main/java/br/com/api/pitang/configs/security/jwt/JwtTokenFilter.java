@@ -1,40 +1,88 @@
 package br.com.api.pitang.configs.security.jwt;
 
 
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_TOKEN;
+import br.com.api.pitang.exceptions.ExceptionResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 
+import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toList;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import org.springframework.beans.factory.annotation.Autowired;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.filter.GenericFilterBean;
 
 import static org.springframework.security.core.context.SecurityContextHolder.getContext;
 
+/**
+ * autentica a requisicao pelo token do header Authorization. Rotas publicas
+ * nao passam pelo token e tokens invalidos sao respondidos direto com um 401
+ * ja serializado, sem lancar excecao para fora da cadeia de filtros
+ */
 public class JwtTokenFilter extends GenericFilterBean {
 
     @Autowired
     private JwtTokenProvider tokenProvider;
 
-    public JwtTokenFilter(JwtTokenProvider tokenProvider) {
+    private final RequestMatcher publicPaths;
+
+    private final byte[] invalidTokenResponse;
+
+    public JwtTokenFilter(JwtTokenProvider tokenProvider, String... publicPaths) {
         this.tokenProvider = tokenProvider;
+        this.publicPaths = publicPaths.length == 0 ? request -> false : new OrRequestMatcher(stream(publicPaths)
+                .map(AntPathRequestMatcher::new)
+                .collect(toList()));
+
+        try {
+            this.invalidTokenResponse = new ObjectMapper()
+                    .writeValueAsBytes(new ExceptionResponse(INVALID_TOKEN, UNAUTHORIZED.value()));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
     }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
-        String token = tokenProvider.getToken((HttpServletRequest) request);
-        if (!isBlank(token) && tokenProvider.isValidToken(token)) {
-            Authentication auth = tokenProvider.getAuthentication(token);
-            if (auth != null)
-                getContext().setAuthentication(auth);
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (publicPaths.matches(httpRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String token = tokenProvider.getToken(httpRequest);
+        if (!isBlank(token)) {
+            Authentication auth = tokenProvider.resolveAuthentication(token);
+            if (auth == null) {
+                rejectInvalidToken((HttpServletResponse) response);
+                return;
+            }
+
+            getContext().setAuthentication(auth);
         }
         chain.doFilter(request, response);
     }
 
+    private void rejectInvalidToken(HttpServletResponse response) throws IOException {
+        response.setStatus(UNAUTHORIZED.value());
+        response.setContentType(APPLICATION_JSON_VALUE);
+        response.setContentLength(invalidTokenResponse.length);
+        response.getOutputStream().write(invalidTokenResponse);
+    }
+
 }
@@ -1,22 +1,24 @@
 package br.com.api.pitang.configs.security.jwt;
 
+import br.com.api.pitang.configs.security.UserDetail;
 import br.com.api.pitang.configs.security.UserDetailService;
+import br.com.api.pitang.configs.security.UserPrincipal;
+import br.com.api.pitang.configs.security.session.OpaqueSessionStore;
 import static br.com.api.pitang.constants.MessagesConstants.INVALID_TOKEN;
 import br.com.api.pitang.data.models.User;
 import br.com.api.pitang.exceptions.AuthenticationJwtException;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
 import static io.jsonwebtoken.Jwts.builder;
 import static io.jsonwebtoken.Jwts.claims;
-import static io.jsonwebtoken.Jwts.parser;
 import static io.jsonwebtoken.SignatureAlgorithm.HS256;
 import java.time.LocalDateTime;
 import static java.time.LocalDateTime.now;
 import static java.time.ZoneId.systemDefault;
 import static java.util.Base64.getEncoder;
 import static java.util.Collections.singletonList;
-import java.util.Date;
 import static java.util.Date.from;
+import java.util.List;
+import static java.util.UUID.randomUUID;
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -24,7 +26,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -34,25 +35,56 @@ public class JwtTokenProvider {
     @Value("${security.jwt.token.secret-key:secret}")
     private String key = "secret";
 
-    @Value("${security.jwt.token.expire-lenght:1440}")
-    private long tokenExpire = 1440;
+    /**
+     * validade curta do token de acesso em minutos, a renovacao e feita pelo refresh token
+     */
+    @Value("${security.jwt.token.expire-lenght:15}")
+    private long tokenExpire = 15;
+
+    /**
+     * quando ativo o usuario autenticado e montado apenas com as claims do token,
+     * sem consultar o banco de dados a cada requisicao
+     */
+    @Value("${security.jwt.token.stateless:false}")
+    private boolean stateless = false;
 
     @Autowired
     private UserDetailService service;
 
+    @Autowired
+    private JwtClaimsCache claimsCache;
+
+    @Autowired
+    private JwtTokenVerifier verifier;
+
+    @Autowired
+    private JwtRevocationList revocationList;
+
+    @Autowired
+    private OpaqueSessionStore sessionStore;
+
     @PostConstruct
     public void init() {
         key = getEncoder().encodeToString(key.getBytes());
     }
 
+    /**
+     * gera o token de acesso, no modo opaco (security.session.mode=opaque) o token e
+     * apenas o id de uma sessao em memoria, caso contrario e um jwt assinado
+     */
     public String createToken(User user) {
+        if (sessionStore.isEnabled())
+            return sessionStore.create(UserPrincipal.of(user));
+
         Claims claims = claims().setSubject(user.getLogin());
+        claims.put("id", user.getId());
         claims.put("roles", singletonList(user.getAuthority()));
 
         LocalDateTime timeNow = now();
         LocalDateTime timeExpire = timeNow.plusMinutes(tokenExpire);
 
         return builder().setClaims(claims)
+                .setId(randomUUID().toString())
                 .setIssuedAt(from(timeNow.atZone(systemDefault()).toInstant()))
                 .setExpiration(from(timeExpire.atZone(systemDefault()).toInstant()))
                 .signWith(HS256, key)
@@ -60,8 +92,59 @@ public class JwtTokenProvider {
     }
 
     public Authentication getAuthentication(String token) {
-        UserDetails user = service.loadUserByUsername(getLoginUser(token));
-        return new UsernamePasswordAuthenticationToken(user, "", user.getAuthorities());
+        Authentication authentication = resolveAuthentication(token);
+        if (authentication == null)
+            throw new AuthenticationJwtException(INVALID_TOKEN);
+
+        return authentication;
+    }
+
+    /**
+     * autentica o token no modo configurado sem lancar excecao, usado pelo filtro
+     * @param token token do header Authorization
+     * @return Authentication ou null caso o token seja invalido, esteja expirado ou revogado
+     */
+    public Authentication resolveAuthentication(String token) {
+        if (sessionStore.isEnabled()) {
+            UserPrincipal principal = sessionStore.get(token);
+            return principal == null ? null
+                    : new UsernamePasswordAuthenticationToken(principal, "", principal.getAuthorities());
+        }
+
+        Claims claims = resolveClaims(token);
+        return claims == null ? null : getAuthentication(claims);
+    }
+
+    /**
+     * revoga o token antes do vencimento, no modo opaco a sessao e removida
+     * e no modo jwt o "jti" entra na lista de revogados
+     * @throws AuthenticationJwtException caso o token jwt seja invalido
+     */
+    public void revokeToken(String token) {
+        if (sessionStore.isEnabled())
+            sessionStore.revoke(token);
+        else
+            revocationList.revoke(getValidClaims(token));
+    }
+
+    public Authentication getAuthentication(Claims claims) {
+        UserPrincipal principal = stateless && claims.get("id") != null
+                ? getPrincipalFromClaims(claims)
+                : UserPrincipal.of(((UserDetail) service.loadUserByUsername(claims.getSubject())).getUser());
+        return new UsernamePasswordAuthenticationToken(principal, "", principal.getAuthorities());
+    }
+
+    /**
+     * monta o usuario autenticado com o id, login e perfil que estao no token,
+     * tokens emitidos sem o id continuam sendo resolvidos pelo banco
+     * @param claims claims ja verificadas do token
+     * @return UserPrincipal sem consultar o banco
+     */
+    private UserPrincipal getPrincipalFromClaims(Claims claims) {
+        List<?> roles = claims.get("roles", List.class);
+        String authority = roles == null || roles.isEmpty() ? "" : roles.get(0).toString();
+
+        return new UserPrincipal(claims.get("id", Number.class).longValue(), claims.getSubject(), authority);
     }
 
     public String getToken(HttpServletRequest request) {
@@ -74,15 +157,45 @@ public class JwtTokenProvider {
     }
 
     public boolean isValidToken(String token) {
-        try {
-            Jws<Claims> claims = parser().setSigningKey(key).parseClaimsJws(token);
-            return !claims.getBody().getExpiration().before(new Date());
-        }catch(Exception ex) {
+        if (sessionStore.isEnabled())
+            return getAuthentication(token) != null;
+
+        return getValidClaims(token) != null;
+    }
+
+    /**
+     * verifica a assinatura e a expiracao do token uma unica vez, as claims
+     * verificadas ficam no cache ate o "exp" do token e sao reaproveitadas
+     * nas proximas requisicoes com o mesmo token. A revogacao e conferida sempre,
+     * inclusive quando as claims vem do cache
+     * @param token
+     * @return Claims do token
+     * @throws AuthenticationJwtException caso o token seja invalido, esteja expirado ou revogado
+     */
+    public Claims getValidClaims(String token) {
+        Claims claims = resolveClaims(token);
+        if (claims == null)
             throw new AuthenticationJwtException(INVALID_TOKEN);
-        }
+
+        return claims;
     }
 
-    private String getLoginUser(String token) {
-        return parser().setSigningKey(key).parseClaimsJws(token).getBody().getSubject();
+    /**
+     * mesma verificacao do getValidClaims, mas sem lancar excecao, usada no filtro
+     * para responder tokens invalidos sem o custo de montar a pilha da excecao
+     * @param token
+     * @return Claims do token ou null caso seja invalido, esteja expirado ou revogado
+     */
+    public Claims resolveClaims(String token) {
+        Claims claims = claimsCache.get(token);
+        if (claims == null) {
+            claims = verifier.verify(token);
+            if (claims == null)
+                return null;
+
+            claimsCache.put(token, claims);
+        }
+
+        return revocationList.isRevoked(claims) ? null : claims;
     }
 }
@@ -0,0 +1,186 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * verificador de tokens HS256 sem alocacoes desnecessarias: a chave e calculada
+ * uma unica vez, cada thread reaproveita o seu Mac e os seus buffers, o base64url
+ * e decodificado direto em bytes e a assinatura e comparada em tempo constante
+ */
+@Component
+public class JwtTokenVerifier {
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final int SIGNATURE_LENGTH = 32;
+
+    /** cabecalho gerado pelo jjwt para HS256: {"alg":"HS256"} */
+    private static final String HS256_HEADER = "eyJhbGciOiJIUzI1NiJ9";
+
+    private static final int[] BASE64URL = new int[128];
+
+    static {
+        Arrays.fill(BASE64URL, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++)
+            BASE64URL[alphabet.charAt(i)] = i;
+    }
+
+    private final SecretKeySpec secretKey;
+    private final ObjectMapper mapper;
+    private final ThreadLocal<Mac> macs;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    @Autowired
+    public JwtTokenVerifier(@Value("${security.jwt.token.secret-key:secret}") String secret, ObjectMapper mapper) {
+        this.secretKey = new SecretKeySpec(secret.getBytes(), HMAC_SHA256);
+        this.mapper = mapper;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * @param token token jwt compacto (header.payload.signature)
+     * @return as claims do token ou null caso o token seja malformado, nao seja HS256,
+     * tenha assinatura invalida, esteja expirado ou ainda nao seja valido
+     */
+    public Claims verify(String token) {
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (headerEnd <= 0 || payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0)
+            return null;
+
+        Buffers buf = buffers.get();
+
+        if (decode(token, payloadEnd + 1, token.length(), buf.signature) != SIGNATURE_LENGTH)
+            return null;
+
+        byte[] signingInput = buf.signingInput(payloadEnd);
+        for (int i = 0; i < payloadEnd; i++)
+            signingInput[i] = (byte) token.charAt(i);
+
+        Mac mac = macs.get();
+        mac.update(signingInput, 0, payloadEnd);
+        try {
+            mac.doFinal(buf.computed, 0);
+        } catch (GeneralSecurityException ex) {
+            return null;
+        }
+
+        if (!MessageDigest.isEqual(buf.signature, buf.computed) || !isHs256Header(token, headerEnd, buf))
+            return null;
+
+        int payloadLength = decode(token, headerEnd + 1, payloadEnd, buf.payload(payloadEnd - headerEnd));
+        if (payloadLength < 0)
+            return null;
+
+        Claims claims;
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> body = mapper.readValue(buf.payload, 0, payloadLength, Map.class);
+            claims = new DefaultClaims(body);
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+
+        return isActive(claims) ? claims : null;
+    }
+
+    private boolean isHs256Header(String token, int headerEnd, Buffers buf) {
+        if (headerEnd == HS256_HEADER.length() && token.startsWith(HS256_HEADER))
+            return true;
+
+        int length = decode(token, 0, headerEnd, buf.payload(headerEnd));
+        if (length < 0)
+            return false;
+
+        try {
+            JsonNode header = mapper.readTree(new String(buf.payload, 0, length, US_ASCII));
+            return "HS256".equals(header.path("alg").asText());
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private boolean isActive(Claims claims) {
+        Date now = new Date();
+        Date expiration = claims.getExpiration();
+        Date notBefore = claims.getNotBefore();
+        return expiration != null && expiration.after(now) && (notBefore == null || !notBefore.after(now));
+    }
+
+    /**
+     * decodifica o trecho [start, end) do token em base64url direto no buffer de destino
+     * @return quantidade de bytes escritos ou -1 caso o trecho seja invalido
+     */
+    private static int decode(String token, int start, int end, byte[] target) {
+        while (end > start && token.charAt(end - 1) == '=')
+            end--;
+
+        int length = end - start;
+        if (length % 4 == 1 || (length * 6) / 8 > target.length)
+            return -1;
+
+        int written = 0;
+        int bits = 0;
+        int accumulator = 0;
+        for (int i = start; i < end; i++) {
+            char c = token.charAt(i);
+            int value = c < 128 ? BASE64URL[c] : -1;
+            if (value < 0)
+                return -1;
+
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                target[written++] = (byte) (accumulator >> bits);
+            }
+        }
+        return written;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class Buffers {
+
+        private final byte[] signature = new byte[SIGNATURE_LENGTH];
+        private final byte[] computed = new byte[SIGNATURE_LENGTH];
+        private byte[] signingInput = new byte[512];
+        private byte[] payload = new byte[512];
+
+        private byte[] signingInput(int length) {
+            if (signingInput.length < length)
+                signingInput = new byte[length];
+            return signingInput;
+        }
+
+        private byte[] payload(int encodedLength) {
+            int length = (encodedLength * 6) / 8 + 1;
+            if (payload.length < length)
+                payload = new byte[length];
+            return payload;
+        }
+    }
+}
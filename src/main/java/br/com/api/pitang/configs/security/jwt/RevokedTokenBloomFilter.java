@@ -0,0 +1,80 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * bloom filter dos "jti" revogados. Responde "talvez revogado" ou "com certeza
+ * nao revogado", o que permite descartar o caso comum sem consultar o conjunto exato.
+ * Os bits so sao ligados, nunca desligados: para remover entradas vencidas um
+ * novo filtro e montado a partir do conjunto exato
+ */
+public class RevokedTokenBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedEntries quantidade de tokens revogados esperada
+     * @param falsePositiveRate taxa de falso positivo desejada para essa quantidade
+     */
+    public RevokedTokenBloomFilter(int expectedEntries, double falsePositiveRate) {
+        int entries = Math.max(expectedEntries, 1);
+        long bitsNeeded = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+        this.bitCount = (int) Math.max(64L, Math.min(bitsNeeded, Integer.MAX_VALUE - 63L));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    public void put(String jti) {
+        long hash = hash(jti);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            long mask = 1L << bit;
+            int index = bit >>> 6;
+
+            long current;
+            do {
+                current = bits.get(index);
+                if ((current & mask) != 0)
+                    break;
+            } while (!bits.compareAndSet(index, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String jti) {
+        long hash = hash(jti);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 1; i <= hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a de 64 bits seguido do fmix64 do murmur3, as duas metades
+     * do resultado alimentam o double hashing dos k indices
+     */
+    private static long hash(String jti) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < jti.length(); i++) {
+            hash ^= jti.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
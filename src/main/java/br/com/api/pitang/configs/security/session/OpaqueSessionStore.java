@@ -0,0 +1,268 @@
+package br.com.api.pitang.configs.security.session;
+
+import br.com.api.pitang.configs.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.nio.file.Files;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import java.nio.file.attribute.PosixFilePermission;
+import static java.nio.file.attribute.PosixFilePermission.GROUP_WRITE;
+import static java.nio.file.attribute.PosixFilePermission.OTHERS_WRITE;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import static java.util.Base64.getUrlEncoder;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * sessoes do modo de token opaco (security.session.mode=opaque). O token enviado ao
+ * cliente sao 32 bytes aleatorios e a autenticacao de cada requisicao e uma unica
+ * busca no mapa, sem base64, HMAC ou parse de json. Revogar e apenas remover a entrada.
+ * <p>
+ * O mapa e indexado pelo SHA-256 do token, como o RefreshToken, entao nem a memoria nem
+ * o snapshot guardam tokens utilizaveis. O mapa e gravado periodicamente no arquivo
+ * informado em security.session.snapshot-file (obrigatorio no modo opaco, em um diretorio
+ * da aplicacao) e carregado na subida apenas se o arquivo e o diretorio pertencerem ao
+ * usuario do processo e nao puderem ser alterados (nem o arquivo lido) por grupo e outros
+ */
+@Slf4j
+@Component
+public class OpaqueSessionStore {
+
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Path snapshotFile;
+
+    private volatile boolean dirty;
+
+    public OpaqueSessionStore(@Value("${security.session.mode:jwt}") String mode,
+                              @Value("${security.session.ttl-minutes:15}") long ttlMinutes,
+                              @Value("${security.session.snapshot-file:}") String snapshotFile,
+                              MeterRegistry registry) {
+        this.enabled = "opaque".equalsIgnoreCase(mode);
+        if (enabled && (snapshotFile == null || snapshotFile.isBlank()))
+            throw new IllegalStateException("security.session.snapshot-file e obrigatorio no modo opaco");
+
+        this.ttlMillis = ttlMinutes * 60_000;
+        this.snapshotFile = enabled ? Paths.get(snapshotFile).toAbsolutePath() : null;
+        registry.gaugeMapSize("security.session.size", null, sessions);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * abre uma sessao para o usuario
+     * @return token opaco que deve ser enviado ao cliente
+     */
+    public String create(UserPrincipal principal) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        sessions.put(digest(token), new Session(principal, currentTimeMillis() + ttlMillis));
+        dirty = true;
+        return token;
+    }
+
+    /**
+     * @param token token opaco enviado no header Authorization
+     * @return usuario da sessao ou null caso a sessao nao exista ou tenha expirado
+     */
+    public UserPrincipal get(String token) {
+        String digest = digest(token);
+        Session session = sessions.get(digest);
+        if (session == null)
+            return null;
+
+        if (session.expiresAt <= currentTimeMillis()) {
+            sessions.remove(digest, session);
+            return null;
+        }
+        return session.principal;
+    }
+
+    public void revoke(String token) {
+        if (sessions.remove(digest(token)) != null)
+            dirty = true;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled || !Files.exists(snapshotFile, NOFOLLOW_LINKS))
+            return;
+
+        try {
+            if (!isTrusted(snapshotFile.getParent(), EnumSet.of(GROUP_WRITE, OTHERS_WRITE))
+                    || !Files.isRegularFile(snapshotFile, NOFOLLOW_LINKS)
+                    || !isTrusted(snapshotFile, EnumSet.complementOf(EnumSet.copyOf(OWNER_ONLY)))) {
+                log.warn("Snapshot de sessoes {} ignorado: arquivo ou diretorio de outro usuario ou com permissao "
+                        + "para grupo e outros", snapshotFile);
+                return;
+            }
+        } catch (IOException ex) {
+            log.warn("Nao foi possivel verificar o dono do snapshot de sessoes {}", snapshotFile, ex);
+            return;
+        }
+
+        long now = currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_VERSION)
+                return;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String digest = in.readUTF();
+                UserPrincipal principal = new UserPrincipal(in.readLong(), in.readUTF(), in.readUTF());
+                long expiresAt = in.readLong();
+
+                if (expiresAt > now)
+                    sessions.put(digest, new Session(principal, expiresAt));
+            }
+            log.info("{} sessoes carregadas de {}", sessions.size(), snapshotFile);
+        } catch (IOException ex) {
+            log.warn("Nao foi possivel carregar as sessoes de {}", snapshotFile, ex);
+        }
+    }
+
+    /**
+     * remove as sessoes expiradas e grava o snapshot caso algo tenha mudado
+     */
+    @Scheduled(fixedDelayString = "${security.session.snapshot-millis:30000}")
+    public void evictAndSnapshot() {
+        if (!enabled)
+            return;
+
+        long now = currentTimeMillis();
+        if (sessions.values().removeIf(session -> session.expiresAt <= now))
+            dirty = true;
+
+        if (dirty)
+            snapshot();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (enabled)
+            snapshot();
+    }
+
+    /**
+     * grava em um arquivo temporario e troca pelo definitivo, assim um restart
+     * no meio da gravacao nunca deixa um snapshot pela metade
+     */
+    public synchronized void snapshot() {
+        dirty = false;
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try {
+            Files.deleteIfExists(temp);
+            createOwnerOnly(temp);
+
+            long now = currentTimeMillis();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                Map<String, Session> current = Map.copyOf(sessions);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt((int) current.values().stream().filter(session -> session.expiresAt > now).count());
+
+                for (Map.Entry<String, Session> entry : current.entrySet()) {
+                    Session session = entry.getValue();
+                    if (session.expiresAt <= now)
+                        continue;
+
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(session.principal.getId());
+                    out.writeUTF(session.principal.getLogin());
+                    out.writeUTF(session.principal.getAuthority());
+                    out.writeLong(session.expiresAt);
+                }
+            }
+
+            Files.move(temp, snapshotFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException ex) {
+            dirty = true;
+            log.warn("Nao foi possivel gravar as sessoes em {}", snapshotFile, ex);
+        }
+    }
+
+    private static void createOwnerOnly(Path file) throws IOException {
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } catch (UnsupportedOperationException ex) {
+            Files.createFile(file);
+        }
+    }
+
+    /**
+     * o caminho precisa pertencer ao usuario do processo e nao ter nenhuma das permissoes
+     * proibidas, em sistemas de arquivo sem permissoes posix apenas o dono e verificado
+     */
+    private static boolean isTrusted(Path path, Set<PosixFilePermission> forbidden) throws IOException {
+        java.nio.file.attribute.UserPrincipal processUser = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!processUser.equals(Files.getOwner(path, NOFOLLOW_LINKS)))
+            return false;
+
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, NOFOLLOW_LINKS);
+            return permissions.stream().noneMatch(forbidden::contains);
+        } catch (UnsupportedOperationException ex) {
+            return true;
+        }
+    }
+
+    private static String digest(String token) {
+        return getUrlEncoder().withoutPadding().encodeToString(SHA_256.get().digest(token.getBytes(US_ASCII)));
+    }
+
+    private static final class Session {
+
+        private final UserPrincipal principal;
+        private final long expiresAt;
+
+        private Session(UserPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
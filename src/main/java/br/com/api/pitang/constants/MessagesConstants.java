@@ -13,6 +13,9 @@ public class MessagesConstants {
     public static final String CAR_NOT_FOUND = "Car not found";
     public static final String INVALID_TOKEN = "Unauthorized - invalid session";
     public static final String PERMISSION_DENIED = "Unauthorized - permission denied";
+    public static final String INVALID_REFRESH_TOKEN = "Unauthorized - invalid refresh token";
+    public static final String TOO_MANY_ATTEMPTS = "Too many login attempts - try again later";
+    public static final String SERVICE_UNAVAILABLE = "Service unavailable - try again later";
 
 
 }
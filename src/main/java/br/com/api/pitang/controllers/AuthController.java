@@ -4,6 +4,7 @@ import br.com.api.pitang.data.dtos.AuthDTO;
 import br.com.api.pitang.services.AuthService;
 import io.swagger.annotations.Api;
 import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -22,7 +23,7 @@ public class AuthController {
    private AuthService service;
 
     @PostMapping
-    public ResponseEntity<Map<Object, Object>> signIn(@Valid @RequestBody AuthDTO authDTO) {
-        return ok(service.signIn(authDTO));
+    public ResponseEntity<Map<Object, Object>> signIn(@Valid @RequestBody AuthDTO authDTO, HttpServletRequest request) {
+        return ok(service.signIn(authDTO, request.getRemoteAddr()));
     }
 }
@@ -2,11 +2,16 @@ package br.com.api.pitang.controllers;
 
 
 import br.com.api.pitang.data.dtos.CarDTO;
+import br.com.api.pitang.data.dtos.CarUsageDTO;
+import br.com.api.pitang.data.dtos.CarUsageReportDTO;
+import br.com.api.pitang.data.dtos.CursorPageDTO;
 import br.com.api.pitang.services.CarService;
 import io.swagger.annotations.Api;
+import java.util.List;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NO_CONTENT;
@@ -42,6 +47,18 @@ public class CarController {
         return ok(service.findAllByUser(pageNumber, pageSize));
     }
 
+    @GetMapping(params = "slice=true")
+    public ResponseEntity<Slice<CarDTO>> findAllByUserAndSlice(@RequestParam(defaultValue = "0") int pageNumber,
+                                                       @RequestParam(defaultValue = "5") int pageSize) {
+        return ok(service.findSliceByUser(pageNumber, pageSize));
+    }
+
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPageDTO<CarDTO>> findAllByUserAndCursor(@RequestParam String cursor,
+                                                                       @RequestParam(defaultValue = "5") int pageSize) {
+        return ok(service.findAllByUser(cursor, pageSize));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<CarDTO> update(@PathVariable Long id, @Valid @RequestBody CarDTO car) {
         car.setId(id);
@@ -53,6 +70,17 @@ public class CarController {
         return ok(service.findById(id));
     }
 
+    @GetMapping("/{id}/usage")
+    public ResponseEntity<CarUsageDTO> findUsage(@PathVariable Long id,
+                                                 @RequestParam(defaultValue = "hour") String window) {
+        return ok(service.findUsage(id, window));
+    }
+
+    @PostMapping("/usage")
+    public ResponseEntity<HttpStatus> reportUsage(@RequestBody List<CarUsageReportDTO> usages) {
+        service.reportUsage(usages);
+        return new ResponseEntity<>(NO_CONTENT);
+    }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<HttpStatus> delete(@PathVariable Long id) {
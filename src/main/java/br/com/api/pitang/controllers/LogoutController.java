@@ -0,0 +1,30 @@
+package br.com.api.pitang.controllers;
+
+import br.com.api.pitang.data.dtos.RefreshTokenDTO;
+import br.com.api.pitang.services.AuthService;
+import io.swagger.annotations.Api;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import static org.springframework.http.HttpStatus.NO_CONTENT;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@Api(value = "Logout", tags = "Logout")
+@RequestMapping("/api/logout")
+public class LogoutController {
+
+    @Autowired
+    private AuthService service;
+
+    @PostMapping
+    public ResponseEntity<HttpStatus> logout(HttpServletRequest request,
+                                             @RequestBody(required = false) RefreshTokenDTO refreshTokenDTO) {
+        service.logout(request, refreshTokenDTO);
+        return new ResponseEntity<>(NO_CONTENT);
+    }
+}
@@ -1,11 +1,14 @@
 package br.com.api.pitang.controllers;
 
+import br.com.api.pitang.data.dtos.CursorPageDTO;
 import br.com.api.pitang.data.dtos.UserDTO;
+import br.com.api.pitang.data.dtos.UserRankDTO;
 import br.com.api.pitang.services.UserService;
 import io.swagger.annotations.Api;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NO_CONTENT;
@@ -39,6 +42,11 @@ public class UserController {
         return ok(service.findById(id));
     }
 
+    @GetMapping("/{id}/rank")
+    public ResponseEntity<UserRankDTO> findRank(@PathVariable Long id) {
+        return ok(service.findRank(id));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<UserDTO> update(@PathVariable Long id, @RequestBody UserDTO user) {
         user.setId(id);
@@ -51,6 +59,18 @@ public class UserController {
         return ok(service.findAll(pageNumber, pageSize));
     }
 
+    @GetMapping(params = "slice=true")
+    public ResponseEntity<Slice<UserDTO>> findAllBySlice(@RequestParam(defaultValue = "0") int pageNumber,
+                                                       @RequestParam(defaultValue = "5") int pageSize) {
+        return ok(service.findSlice(pageNumber, pageSize));
+    }
+
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPageDTO<UserDTO>> findAllByCursor(@RequestParam String cursor,
+                                                                  @RequestParam(defaultValue = "5") int pageSize) {
+        return ok(service.findAll(cursor, pageSize));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<HttpStatus> delete(@PathVariable Long id) {
         service.delete(id);
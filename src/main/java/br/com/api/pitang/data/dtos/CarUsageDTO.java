@@ -0,0 +1,33 @@
+package br.com.api.pitang.data.dtos;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * acessos ao carro na janela pedida, buckets vai do mais antigo ao atual
+ * (minutos na janela de uma hora e horas nas janelas de dia e semana)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({ "carId", "window", "bucket", "total", "buckets" })
+public class CarUsageDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long carId;
+
+    private String window;
+
+    private String bucket;
+
+    private Long total;
+
+    private List<Long> buckets;
+}
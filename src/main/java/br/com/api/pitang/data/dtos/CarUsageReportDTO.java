@@ -0,0 +1,25 @@
+package br.com.api.pitang.data.dtos;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * acessos a um carro registrados pelo cliente enquanto estava offline
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({ "carId", "count" })
+public class CarUsageReportDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long carId;
+
+    private Long count;
+}
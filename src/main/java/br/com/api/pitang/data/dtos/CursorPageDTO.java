@@ -0,0 +1,27 @@
+package br.com.api.pitang.data.dtos;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * pagina por cursor, nextCursor e enviado no parametro cursor para buscar a
+ * proxima pagina e vem nulo na ultima
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({ "content", "nextCursor" })
+public class CursorPageDTO<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<T> content;
+
+    private String nextCursor;
+}
@@ -7,6 +7,8 @@ import static com.fasterxml.jackson.annotation.JsonFormat.Shape.STRING;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import static com.fasterxml.jackson.annotation.JsonProperty.Access.READ_ONLY;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.io.Serializable;
 import java.time.LocalDate;
@@ -27,7 +29,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(NON_NULL)
-@JsonPropertyOrder({ "id", "firstName", "lastName", "birthDate", "email", "login", "phone", "createdAt","lastLogin" })
+@JsonPropertyOrder({ "id", "firstName", "lastName", "birthDate", "email", "login", "phone", "createdAt","lastLogin", "totalUsageCounter" })
 @JsonIgnoreProperties(value = { "password" }, allowSetters = true)
 public class UserDTO implements Serializable {
 
@@ -74,5 +76,11 @@ public class UserDTO implements Serializable {
     @JsonFormat(shape = STRING, pattern = "dd/MM/yyyy HH:mm:ss.SSS")
     private LocalDateTime lastLogin;
 
+    /**
+     * total do bonus stage, o mesmo valor usado na ordem do ranking
+     */
+    @JsonProperty(access = READ_ONLY)
+    private Long totalUsageCounter;
+
     private List<CarDTO> cars;
 }
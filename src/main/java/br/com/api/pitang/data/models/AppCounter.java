@@ -0,0 +1,45 @@
+package br.com.api.pitang.data.models;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * contadores globais mantidos por incremento, como o total de usuarios usado nas
+ * respostas paginadas no lugar de um count(*) sobre a tabela. Cada contador e somado
+ * em SHARDS linhas criadas antecipadamente, o incremento vai para uma delas ao acaso
+ * e transacoes concorrentes (cadastros simultaneos) nao disputam a mesma linha
+ */
+@Data
+@Entity
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(AppCounterId.class)
+@Table(name = "app_counters")
+public class AppCounter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String USERS = "users";
+
+    public static final int SHARDS = 16;
+
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @Id
+    @Column(name = "shard")
+    private Integer shard;
+
+    @Column(name = "counter_value", nullable = false)
+    private Long value;
+}
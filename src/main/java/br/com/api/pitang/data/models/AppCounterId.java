@@ -0,0 +1,18 @@
+package br.com.api.pitang.data.models;
+
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppCounterId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String name;
+
+    private Integer shard;
+}
@@ -12,8 +12,12 @@ import static javax.persistence.FetchType.LAZY;
 import javax.persistence.GeneratedValue;
 import static javax.persistence.GenerationType.SEQUENCE;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PrimaryKeyJoinColumn;
+import javax.persistence.SecondaryTable;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -23,13 +27,22 @@ import lombok.experimental.SuperBuilder;
 import org.hibernate.envers.Audited;
 import org.springframework.format.annotation.DateTimeFormat;
 
+/**
+ * o contador de acessos fica em car_usage_counters, uma tabela estreita (id e contador)
+ * na mesma entidade: o incremento a cada acesso reescreve apenas essa linha, sem tocar
+ * na linha do carro nem no indice da placa. A tabela nao tem indice alem da chave, assim
+ * o incremento e um HOT update. O contador e mantido apenas por SQL nativo, o Hibernate
+ * grava o valor inicial no insert e nunca o atualiza
+ */
 @Data
 @Entity
 @Audited
 @SuperBuilder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "cars")
+@Table(name = "cars", indexes = @Index(name = "idx_cars_user_model", columnList = "user_id, model, id"))
+@SecondaryTable(name = "car_usage_counters", pkJoinColumns = @PrimaryKeyJoinColumn(name = "car_id"))
+@org.hibernate.annotations.Table(appliesTo = "car_usage_counters", optional = false)
 public class Car implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -62,9 +75,15 @@ public class Car implements Serializable {
     @JsonFormat(shape = STRING, pattern = "dd/MM/yyyy HH:mm:ss.SSS")
     private LocalDateTime createdAt;
 
-    @Column(name = "usage_counter")
+    @Column(name = "usage_counter", table = "car_usage_counters", nullable = false, updatable = false)
     private Long usageCounter;
 
+    @PrePersist
+    private void prePersist() {
+        if (usageCounter == null)
+            usageCounter = 0L;
+    }
+
     @Override
     public String toString() {
         return "";
@@ -0,0 +1,35 @@
+package br.com.api.pitang.data.models;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * segmento do CarUsageJournal ja gravado no banco, inserido na mesma transacao que
+ * soma os acessos. Um segmento que nao pode ser removido do disco apos o commit e
+ * reaplicado na proxima inicializacao, e esta linha impede que seja somado duas vezes
+ */
+@Data
+@Entity
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "car_usage_applied_segments")
+public class CarUsageAppliedSegment implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "segment_id", length = 36)
+    private String segmentId;
+
+    @Column(name = "applied_at", nullable = false)
+    private LocalDateTime appliedAt;
+}
@@ -0,0 +1,56 @@
+package br.com.api.pitang.data.models;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import static javax.persistence.FetchType.LAZY;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.OnDelete;
+import static org.hibernate.annotations.OnDeleteAction.CASCADE;
+
+/**
+ * total de acessos de um carro em uma hora (bucketStart em UTC), uma linha por
+ * carro e hora. E o historico persistido do CarUsageHistory, usado para recarregar
+ * as janelas de dia e semana apos reiniciar a api
+ */
+@Data
+@Entity
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(CarUsageRollupId.class)
+@Table(name = "car_usage_rollups")
+public class CarUsageRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "car_id")
+    private Long carId;
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+    @ManyToOne(fetch = LAZY)
+    @OnDelete(action = CASCADE)
+    @JoinColumn(name = "car_id", insertable = false, updatable = false)
+    private Car car;
+
+    @Column(name = "usage_count", nullable = false)
+    private Long usageCount;
+
+    @Override
+    public String toString() {
+        return "";
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.api.pitang.data.models;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarUsageRollupId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long carId;
+
+    private LocalDateTime bucketStart;
+}
@@ -14,6 +14,8 @@ import javax.persistence.GeneratedValue;
 import static javax.persistence.GenerationType.SEQUENCE;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.PrimaryKeyJoinColumn;
+import javax.persistence.SecondaryTable;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -24,6 +26,10 @@ import org.hibernate.envers.Audited;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.GrantedAuthority;
 
+/**
+ * o total de acessos fica em user_usage_counters, separado da linha do usuario,
+ * assim os lotes de acessos nao disputam a linha lida no login e nas consultas
+ */
 @Data
 @Entity
 @Audited
@@ -31,6 +37,8 @@ import org.springframework.security.core.GrantedAuthority;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "users")
+@SecondaryTable(name = "user_usage_counters", pkJoinColumns = @PrimaryKeyJoinColumn(name = "user_id"))
+@org.hibernate.annotations.Table(appliesTo = "user_usage_counters", optional = false)
 public class User implements GrantedAuthority {
 
     private static final long serialVersionUID = 1L;
@@ -78,9 +86,16 @@ public class User implements GrantedAuthority {
     @OneToMany(mappedBy = "user", cascade = REMOVE, fetch = LAZY)
     private List<Car> cars;
 
-    @Column(name = "total_usage_counter")
+    @Column(name = "total_usage_counter", table = "user_usage_counters")
     private Long totalUsageCounter;
 
+    /**
+     * quantidade de carros do usuario, mantida por incremento pelo CarService
+     * e nunca gravada pela entidade
+     */
+    @Column(name = "car_count", insertable = false, updatable = false)
+    private Long carCount;
+
     @Override
     public String getAuthority() {
         return "USER";
@@ -0,0 +1,55 @@
+package br.com.api.pitang.data.models;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import static javax.persistence.FetchType.LAZY;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.OnDelete;
+import static org.hibernate.annotations.OnDeleteAction.CASCADE;
+
+/**
+ * parte do total de acessos de um usuario ainda nao somada ao totalUsageCounter,
+ * uma linha por usuario e shard. O total real e o totalUsageCounter mais a soma
+ * dos deltas, que o UserTotalCounter compacta periodicamente
+ */
+@Data
+@Entity
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(UserUsageCounterShardId.class)
+@Table(name = "user_usage_counter_shards")
+public class UserUsageCounterShard implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "shard")
+    private Integer shard;
+
+    @ManyToOne(fetch = LAZY)
+    @OnDelete(action = CASCADE)
+    @JoinColumn(name = "user_id", insertable = false, updatable = false)
+    private User user;
+
+    @Column(name = "delta", nullable = false)
+    private Long delta;
+
+    @Override
+    public String toString() {
+        return "";
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.http.HttpStatus;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -66,6 +68,18 @@ public class ExceptionMessageCustom extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(exceptionResponse, BAD_REQUEST);
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public final ResponseEntity<ExceptionResponse> serviceUnavailableException(ServiceUnavailableException ex) {
+        ExceptionResponse exceptionResponse = new ExceptionResponse(ex.getMessage(), SERVICE_UNAVAILABLE.value());
+        return new ResponseEntity<>(exceptionResponse, SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public final ResponseEntity<ExceptionResponse> tooManyRequestsException(TooManyRequestsException ex) {
+        ExceptionResponse exceptionResponse = new ExceptionResponse(ex.getMessage(), TOO_MANY_REQUESTS.value());
+        return new ResponseEntity<>(exceptionResponse, TOO_MANY_REQUESTS);
+    }
+
     private String argumentNotValidSimplifiedMessage(String exceptionMessage) {
        if (exceptionMessage.contains(INVALID_FIELDS))
            return INVALID_FIELDS;
@@ -0,0 +1,14 @@
+package br.com.api.pitang.exceptions;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(SERVICE_UNAVAILABLE)
+public class ServiceUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package br.com.api.pitang.exceptions;
+
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(TOO_MANY_REQUESTS)
+public class TooManyRequestsException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
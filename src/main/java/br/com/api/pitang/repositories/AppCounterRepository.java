@@ -0,0 +1,37 @@
+package br.com.api.pitang.repositories;
+
+import br.com.api.pitang.data.models.AppCounter;
+import br.com.api.pitang.data.models.AppCounterId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AppCounterRepository extends JpaRepository<AppCounter, AppCounterId> {
+
+    /**
+     * valor do contador, a soma dos shards
+     */
+    @Query(value = "select sum(counter_value) from app_counters where name = :name", nativeQuery = true)
+    Long findValue(@Param(value = "name") String name);
+
+    @Modifying
+    @Query(value = "update app_counters set counter_value = counter_value + :delta "
+            + "where name = :name and shard = :shard", nativeQuery = true)
+    void increment(@Param(value = "name") String name,
+                   @Param(value = "shard") Integer shard,
+                   @Param(value = "delta") Long delta);
+
+    /**
+     * recalcula o total de usuarios, usado depois de remocoes em massa. A diferenca e
+     * aplicada no shard 0, os demais shards continuam recebendo incrementos
+     * @return quantidade de contadores corrigidos
+     */
+    @Modifying
+    @Query(value = "update app_counters set counter_value = counter_value + (select count(*) from users) "
+            + "- (select sum(a.counter_value) from app_counters a where a.name = 'users') "
+            + "where name = 'users' and shard = 0 "
+            + "and (select count(*) from users) <> (select sum(a.counter_value) from app_counters a where a.name = 'users')",
+            nativeQuery = true)
+    int refreshUserCount();
+}
@@ -1,8 +1,11 @@
 package br.com.api.pitang.repositories;
 
 import br.com.api.pitang.data.models.Car;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -12,9 +15,42 @@ public interface CarRepository extends JpaRepository<Car, Long> {
 
     Page<Car> findAllByUserId(Long userId, Pageable pageable);
 
+    /**
+     * pagina sem a consulta de count, busca uma linha a mais para saber se ha proxima
+     */
+    Slice<Car> findSliceByUserId(Long userId, Pageable pageable);
+
     Long countByLicensePlateAndIdNot(String plate, Long id);
 
+    /**
+     * primeira pagina por cursor dos carros do usuario, sem a consulta de count. Os carros
+     * do usuario vem pelo indice idx_cars_user_model (user_id, model, id) e sao ordenados
+     * pelo contador em memoria: o custo e O(carros do usuario), limitado a um usuario, ja
+     * que indexar o contador impediria os HOT updates de car_usage_counters
+     */
+    @Query("select c from Car c where c.user.id = :userId "
+            + "order by c.usageCounter desc, c.model asc, c.id asc")
+    List<Car> findAllByUserIdOrdered(@Param(value = "userId") Long userId, Pageable pageable);
+
+    /**
+     * pagina dos carros do usuario logo depois da chave (usageCounter, model, id) do
+     * ultimo carro da pagina anterior, sem offset e sem a consulta de count, com o mesmo
+     * custo da primeira pagina
+     */
+    @Query("select c from Car c where c.user.id = :userId and (c.usageCounter < :counter "
+            + "or (c.usageCounter = :counter and (c.model > :model or (c.model = :model and c.id > :id)))) "
+            + "order by c.usageCounter desc, c.model asc, c.id asc")
+    List<Car> findAllByUserIdAfter(@Param(value = "userId") Long userId,
+                                   @Param(value = "counter") Long counter,
+                                   @Param(value = "model") String model,
+                                   @Param(value = "id") Long id,
+                                   Pageable pageable);
+
+    @Query("select c.user.id from Car c where c.id in :ids")
+    List<Long> findUserIdsByIdIn(@Param(value = "ids") Collection<Long> ids);
+
     @Modifying
-    @Query("update Car set usageCounter = usageCounter + 1 where id = :id and user.id = :userId")
+    @Query(value = "update car_usage_counters set usage_counter = coalesce(usage_counter, 0) + 1 "
+            + "where car_id = (select id from cars where id = :id and user_id = :userId)", nativeQuery = true)
     void updateUsageCounter(@Param(value = "id") Long id, @Param(value = "userId") Long userId);
 }
@@ -0,0 +1,15 @@
+package br.com.api.pitang.repositories;
+
+import br.com.api.pitang.data.models.CarUsageAppliedSegment;
+import java.time.LocalDateTime;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CarUsageAppliedSegmentRepository extends JpaRepository<CarUsageAppliedSegment, String> {
+
+    @Modifying
+    @Query("delete from CarUsageAppliedSegment where appliedAt < :deadline")
+    void deleteOlderThan(@Param(value = "deadline") LocalDateTime deadline);
+}
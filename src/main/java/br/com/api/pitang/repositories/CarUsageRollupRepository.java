@@ -0,0 +1,19 @@
+package br.com.api.pitang.repositories;
+
+import br.com.api.pitang.data.models.CarUsageRollup;
+import br.com.api.pitang.data.models.CarUsageRollupId;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CarUsageRollupRepository extends JpaRepository<CarUsageRollup, CarUsageRollupId> {
+
+    List<CarUsageRollup> findAllByBucketStartGreaterThanEqual(LocalDateTime since);
+
+    @Modifying
+    @Query("delete from CarUsageRollup where bucketStart < :deadline")
+    void deleteOlderThan(@Param(value = "deadline") LocalDateTime deadline);
+}
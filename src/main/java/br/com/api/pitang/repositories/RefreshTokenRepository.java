@@ -0,0 +1,54 @@
+package br.com.api.pitang.repositories;
+
+import br.com.api.pitang.data.models.RefreshToken;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    @Query("select r from RefreshToken r join fetch r.user where r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findDistinctByTokenHash(@Param(value = "tokenHash") String tokenHash);
+
+    /**
+     * consome o refresh token, quando duas renovacoes concorrentes usam o mesmo
+     * token apenas uma delas remove a linha e recebe 1 como retorno
+     * @param id id do refresh token
+     * @return quantidade de linhas removidas
+     */
+    @Modifying
+    @Query("delete from RefreshToken where id = :id")
+    int consume(@Param(value = "id") Long id);
+
+    @Modifying
+    @Query("delete from RefreshToken where tokenHash = :tokenHash")
+    int deleteByTokenHash(@Param(value = "tokenHash") String tokenHash);
+
+    /**
+     * revoga todas as sessoes do usuario, usado quando a senha e trocada
+     * @param userId id do usuario
+     * @return quantidade de linhas removidas
+     */
+    @Modifying
+    @Query("delete from RefreshToken r where r.user.id = :userId")
+    int deleteAllByUserId(@Param(value = "userId") Long userId);
+
+    /**
+     * revoga as sessoes do usuario emitidas antes do instante informado, mantendo
+     * o refresh token gerado no proprio login que disparou a troca do hash
+     * @param userId id do usuario
+     * @param before instante de corte, tokens criados a partir dele sao mantidos
+     * @return quantidade de linhas removidas
+     */
+    @Modifying
+    @Query("delete from RefreshToken r where r.user.id = :userId and r.createdAt < :before")
+    int deleteAllByUserIdAndCreatedAtBefore(@Param(value = "userId") Long userId,
+                                            @Param(value = "before") LocalDateTime before);
+
+    @Modifying
+    @Query("delete from RefreshToken where expiresAt < :now")
+    int deleteExpired(@Param(value = "now") LocalDateTime now);
+}
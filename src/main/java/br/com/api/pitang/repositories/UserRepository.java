@@ -20,15 +20,77 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     /**
      * atualizara o totalUsageCounter para o somatorio de todos
-     * os usageCounter dos carros que o usuario possuir
+     * os usageCounter dos carros que o usuario possuir, descontando
+     * o que ainda esta nos shards do total
      * @param id id do usuario
      */
     @Modifying
-    @Query("UPDATE User u SET u.totalUsageCounter = (SELECT coalesce(SUM(c.usageCounter), 0) FROM u.cars c) where u.id = :id")
+    @Query(value = "update user_usage_counters set total_usage_counter = "
+            + "(select coalesce(sum(u.usage_counter), 0) from car_usage_counters u join cars c on c.id = u.car_id "
+            + "where c.user_id = :id) "
+            + "- (select coalesce(sum(s.delta), 0) from user_usage_counter_shards s where s.user_id = :id) "
+            + "where user_id = :id", nativeQuery = true)
     void updateTotalUsageCounter(@Param(value = "id") Long id);
 
+    /**
+     * soma o delta ao totalUsageCounter sem percorrer os carros do usuario,
+     * o delta e negativo quando um carro e removido
+     * @param id id do usuario
+     * @param delta quantidade de acessos a somar
+     */
+    @Modifying
+    @Query(value = "update user_usage_counters set total_usage_counter = coalesce(total_usage_counter, 0) + :delta "
+            + "where user_id = :id", nativeQuery = true)
+    void incrementTotalUsageCounter(@Param(value = "id") Long id, @Param(value = "delta") Long delta);
+
+    /**
+     * recalcula em um unico comando o totalUsageCounter de todos os usuarios cujo
+     * total (somando os shards ainda nao compactados) divergiu do somatorio dos carros
+     * @return quantidade de usuarios corrigidos
+     */
+    @Modifying
+    @Query(value = "update user_usage_counters t set total_usage_counter = "
+            + "(select coalesce(sum(u.usage_counter), 0) from car_usage_counters u join cars c on c.id = u.car_id "
+            + "where c.user_id = t.user_id) "
+            + "- (select coalesce(sum(s.delta), 0) from user_usage_counter_shards s where s.user_id = t.user_id) "
+            + "where coalesce(t.total_usage_counter "
+            + "+ (select coalesce(sum(s.delta), 0) from user_usage_counter_shards s where s.user_id = t.user_id), -1) <> "
+            + "(select coalesce(sum(u.usage_counter), 0) from car_usage_counters u join cars c on c.id = u.car_id "
+            + "where c.user_id = t.user_id)", nativeQuery = true)
+    int reconcileTotalUsageCounters();
+
+    @Query(value = "select coalesce(car_count, 0) from users where id = :id", nativeQuery = true)
+    Long findCarCount(@Param(value = "id") Long id);
+
+    /**
+     * soma o delta a quantidade de carros do usuario, chamado ao criar e remover carros
+     */
+    @Modifying
+    @Query(value = "update users set car_count = coalesce(car_count, 0) + :delta where id = :id", nativeQuery = true)
+    void incrementCarCount(@Param(value = "id") Long id, @Param(value = "delta") Long delta);
+
+    /**
+     * recalcula a quantidade de carros dos usuarios em que ela divergiu da tabela de carros
+     * @return quantidade de usuarios corrigidos
+     */
+    @Modifying
+    @Query(value = "update users u set car_count = (select count(*) from cars c where c.user_id = u.id) "
+            + "where coalesce(u.car_count, -1) <> (select count(*) from cars c where c.user_id = u.id)", nativeQuery = true)
+    int reconcileCarCounts();
+
+    /**
+     * troca o hash da senha apenas se o hash atual ainda for o esperado,
+     * evitando sobrescrever uma troca de senha feita nesse meio tempo
+     */
+    @Modifying
+    @Query(value = "update users set password = :newPassword where id = :id and password = :oldPassword",
+            nativeQuery = true)
+    int updatePassword(@Param(value = "id") Long id,
+                       @Param(value = "oldPassword") String oldPassword,
+                       @Param(value = "newPassword") String newPassword);
+
     @Modifying
-    @Query("update User set lastLogin = :lastLogin where id = :id")
+    @Query(value = "update users set last_login = :lastLogin where id = :id", nativeQuery = true)
     void updateLastLogin(@Param(value = "id") Long id,
                          @Param(value = "lastLogin") LocalDateTime lastLogin);
 
@@ -1,19 +1,33 @@
 package br.com.api.pitang.services;
 
 
+import br.com.api.pitang.configs.security.BoundedPasswordEncoder;
+import br.com.api.pitang.configs.security.LoginAttemptTracker;
+import br.com.api.pitang.configs.security.UserDetail;
 import br.com.api.pitang.configs.security.jwt.JwtTokenProvider;
 import static br.com.api.pitang.constants.MessagesConstants.INVALID_LOGIN;
+import static br.com.api.pitang.constants.MessagesConstants.TOO_MANY_ATTEMPTS;
 import br.com.api.pitang.data.dtos.AuthDTO;
+import br.com.api.pitang.data.dtos.RefreshTokenDTO;
 import br.com.api.pitang.data.models.User;
+import br.com.api.pitang.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDateTime;
+import static java.time.LocalDateTime.now;
 import java.util.HashMap;
 import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+@Slf4j
 @Service
 public class AuthService {
 
@@ -26,25 +40,113 @@ public class AuthService {
     @Autowired
     private UserService userService;
 
-    public Map<Object, Object> signIn(AuthDTO authDTO) {
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private LoginAttemptTracker attemptTracker;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    /**
+     * logins ou ips com falhas demais na janela sao recusados antes do BCrypt.
+     * O usuario usado para gerar o token e o mesmo carregado pelo AuthenticationManager,
+     * entao o login custa apenas o select do usuario e o update do ultimo login
+     * @param authDTO login e senha
+     * @param clientIp ip do cliente, usado no limite de tentativas por ip
+     * @throws TooManyRequestsException caso o limite de tentativas tenha sido atingido
+     */
+    public Map<Object, Object> signIn(AuthDTO authDTO, String clientIp) {
+        if (attemptTracker.isBlocked(authDTO.getLogin(), clientIp))
+            throw new TooManyRequestsException(TOO_MANY_ATTEMPTS);
 
         try {
-            authManager.authenticate(
+            Authentication authentication = authManager.authenticate(
                     new UsernamePasswordAuthenticationToken(authDTO.getLogin(), authDTO.getPassword())
             );
-            User user = userService.findByLogin(authDTO.getLogin());
-            String token = tokenProvider.createToken(user);
-
-            Map<Object, Object> response = new HashMap<>();
-            response.put("name", user.getFirstName());
-            response.put("token", token);
+            User user = ((UserDetail) authentication.getPrincipal()).getUser();
+            LocalDateTime signedInAt = now();
+            Map<Object, Object> response = buildTokens(user);
 
             userService.updateLastLogin(user.getId());
+            rehashPasswordIfNeeded(user, authDTO.getPassword(), signedInAt);
+            attemptTracker.recordSuccess(authDTO.getLogin());
 
             return response;
         } catch (AuthenticationException ex) {
+            attemptTracker.recordFailure(authDTO.getLogin(), clientIp);
             throw new BadCredentialsException(INVALID_LOGIN);
         }
 
     }
+
+    /**
+     * troca um refresh token valido por um novo token de acesso e um novo refresh token,
+     * sem verificar a senha novamente. O ultimo login e atualizado no maximo uma vez
+     * por dia para que usuarios que apenas renovam o token nao sejam tidos como inativos
+     * @param refreshTokenDTO refresh token recebido no login ou na ultima renovacao
+     * @return nome do usuario, token de acesso e o novo refresh token
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<Object, Object> refresh(RefreshTokenDTO refreshTokenDTO) {
+        User user = refreshTokenService.consume(refreshTokenDTO.getRefreshToken());
+        Map<Object, Object> response = buildTokens(user);
+
+        if (user.getLastLogin() == null || user.getLastLogin().isBefore(now().minusDays(1)))
+            userService.updateLastLogin(user.getId());
+
+        return response;
+    }
+
+    /**
+     * revoga o token de acesso usado na requisicao ate o seu vencimento e,
+     * caso informado, invalida tambem o refresh token da sessao
+     * @param request requisicao autenticada com o token a ser revogado
+     * @param refreshTokenDTO refresh token da sessao, opcional
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void logout(HttpServletRequest request, RefreshTokenDTO refreshTokenDTO) {
+        tokenProvider.revokeToken(tokenProvider.getToken(request));
+
+        if (refreshTokenDTO != null)
+            refreshTokenService.revoke(refreshTokenDTO.getRefreshToken());
+    }
+
+    private Map<Object, Object> buildTokens(User user) {
+        Map<Object, Object> response = new HashMap<>();
+        response.put("name", user.getFirstName());
+        response.put("token", tokenProvider.createToken(user));
+        response.put("refreshToken", refreshTokenService.create(user));
+        return response;
+    }
+
+    /**
+     * apos um login com sucesso, caso o custo do hash salvo esteja fora da faixa aceita,
+     * o hash e refeito com o custo atual em segundo plano, sem atrasar a resposta.
+     * Se o pool de hash estiver ocupado, o banco falhar ou a senha tiver sido trocada
+     * nesse meio tempo, a falha e registrada e a troca fica para o proximo login
+     * @param user usuario autenticado com o hash atual
+     * @param rawPassword senha informada no login
+     * @param signedInAt inicio do login, o refresh token emitido nele sobrevive a troca do hash
+     */
+    private void rehashPasswordIfNeeded(User user, String rawPassword, LocalDateTime signedInAt) {
+        if (!passwordEncoder.upgradeEncoding(user.getPassword()))
+            return;
+
+        passwordEncoder.encodeAsync(rawPassword)
+                .thenApply(hash -> userService.updatePassword(user.getId(), user.getPassword(), hash, signedInAt))
+                .whenComplete((updated, ex) -> {
+                    if (ex != null) {
+                        registry.counter("security.password.rehash.failures", "reason", "error").increment();
+                        log.warn("Falha ao refazer o hash da senha do usuario {}", user.getId(), ex);
+                    } else if (!updated) {
+                        registry.counter("security.password.rehash.failures", "reason", "changed").increment();
+                        log.warn("Senha do usuario {} alterada antes do novo hash, troca descartada", user.getId());
+                    }
+                });
+    }
 }
@@ -6,20 +6,36 @@ import static br.com.api.pitang.constants.MessagesConstants.LICENSE_ALREADY_EXIS
 import static br.com.api.pitang.constants.MessagesConstants.MISSING_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.PERMISSION_DENIED;
 import br.com.api.pitang.data.dtos.CarDTO;
+import br.com.api.pitang.data.dtos.CursorPageDTO;
+import br.com.api.pitang.data.dtos.CarUsageDTO;
+import br.com.api.pitang.data.dtos.CarUsageReportDTO;
 import br.com.api.pitang.data.models.Car;
+import br.com.api.pitang.data.models.User;
 import br.com.api.pitang.exceptions.ValidationException;
 import br.com.api.pitang.repositories.CarRepository;
+import br.com.api.pitang.repositories.UserRepository;
+import br.com.api.pitang.services.CarUsageHistory.Window;
+import br.com.api.pitang.utils.CursorUtils.Cursor;
+import static br.com.api.pitang.utils.CursorUtils.decode;
+import static br.com.api.pitang.utils.CursorUtils.encode;
 import static br.com.api.pitang.utils.DozerConverter.convertObject;
 import static br.com.api.pitang.utils.GenericUtils.getUserLogged;
+import static br.com.api.pitang.utils.GenericUtils.toPage;
 import java.time.LocalDateTime;
 import java.time.Year;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
 import javax.persistence.EntityNotFoundException;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import static org.springframework.data.domain.Sort.Order.asc;
 import static org.springframework.data.domain.Sort.Order.desc;
@@ -33,6 +49,21 @@ public class CarService {
     @Autowired
     private CarRepository repository;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CarUsageAggregator usageAggregator;
+
+    @Autowired
+    private CarUsageHistory usageHistory;
+
+    @Autowired
+    private UserLeaderboard leaderboard;
+
+    @Value("${cars.usage.report-max-items:1000}")
+    private int reportMaxItems;
+
     @Transactional(rollbackFor = Exception.class)
     public CarDTO save(CarDTO carDTO) {
         Car car = convertDTOtoEntity(carDTO);
@@ -40,25 +71,89 @@ public class CarService {
         validateFields(car);
         unique(car);
 
+        boolean insert = car.getId() == null;
         car = repository.save(car);
+        if (insert)
+            userRepository.incrementCarCount(car.getUser().getId(), 1L);
         return convertEntityToDTO(car);
     }
 
+    /**
+     * pagina dos carros do usuario logado sem count(*): o total vem do car_count
+     * mantido no usuario
+     */
     public Page<CarDTO> findAllByUser(int pageNumber, int pageSize) {
+        Long userId = requireNonNull(getUserLogged()).getId();
+        Slice<Car> cars = findSliceByUser(userId, pageNumber, pageSize);
+        return toPage(cars, convertAll(cars), userRepository.findCarCount(userId));
+    }
+
+    /**
+     * fatia dos carros do usuario logado, busca pageSize + 1 linhas e informa apenas
+     * se ha proxima pagina, sem total
+     */
+    public Slice<CarDTO> findSliceByUser(int pageNumber, int pageSize) {
+        return findSliceByUser(requireNonNull(getUserLogged()).getId(), pageNumber, pageSize)
+                .map(this::convertEntityToDTO);
+    }
+
+    private Slice<Car> findSliceByUser(Long userId, int pageNumber, int pageSize) {
         Sort sort = by(desc("usageCounter"), asc("model"));
-        Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
-        Page<Car> cars = repository.findAllByUserId(requireNonNull(getUserLogged()).getId(), pageable);
-        return cars.map(this::convertEntityToDTO);
+        return repository.findSliceByUserId(userId, PageRequest.of(pageNumber, pageSize, sort));
+    }
+
+    private List<CarDTO> convertAll(Slice<Car> cars) {
+        return cars.getContent().stream().map(this::convertEntityToDTO).collect(toList());
+    }
+
+    /**
+     * pagina por cursor (keyset) dos carros do usuario logado, comecando logo depois da
+     * chave (usageCounter, model, id) do cursor, sem offset e sem count. Cursor vazio
+     * retorna a primeira pagina
+     * @throws ValidationException caso o cursor ou o tamanho da pagina sejam invalidos
+     */
+    public CursorPageDTO<CarDTO> findAllByUser(String cursor, int pageSize) {
+        if (pageSize < 1)
+            throw new ValidationException(INVALID_FIELDS);
+
+        Long userId = requireNonNull(getUserLogged()).getId();
+        Cursor after = isBlank(cursor) ? null : decode(cursor);
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<Car> cars = after == null
+                ? repository.findAllByUserIdOrdered(userId, pageable)
+                : repository.findAllByUserIdAfter(userId, after.getCounter(), after.getText(), after.getId(), pageable);
+
+        String nextCursor = null;
+        if (cars.size() > pageSize) {
+            cars = cars.subList(0, pageSize);
+            Car last = cars.get(pageSize - 1);
+            nextCursor = encode(last.getUsageCounter() != null ? last.getUsageCounter() : 0L, last.getModel(), last.getId());
+        }
+
+        return CursorPageDTO.<CarDTO>builder()
+                .content(cars.stream().map(this::convertEntityToDTO).collect(toList()))
+                .nextCursor(nextCursor)
+                .build();
     }
 
     public CarDTO findById(Long id) {
         return convertEntityToDTO(getCarIfUserHasPermission(id));
     }
 
+    /**
+     * remove o carro e desconta os acessos dele e o proprio carro dos contadores do usuario
+     */
     @Transactional(rollbackFor = Exception.class)
     public void delete(Long id) {
-        getCarIfUserHasPermission(id);
+        Car car = getCarIfUserHasPermission(id);
         repository.deleteById(id);
+        userRepository.incrementCarCount(car.getUser().getId(), -1L);
+        usageHistory.remove(id);
+
+        if (car.getUsageCounter() != null && car.getUsageCounter() > 0) {
+            userRepository.incrementTotalUsageCounter(car.getUser().getId(), -car.getUsageCounter());
+            leaderboard.addDelta(car.getUser().getId(), -car.getUsageCounter());
+        }
     }
 
     /**
@@ -89,7 +184,7 @@ public class CarService {
 
     private void validateInsert(Car car) {
         car.setCreatedAt(LocalDateTime.now());
-        car.setUser(getUserLogged());
+        car.setUser(User.builder().id(requireNonNull(getUserLogged()).getId()).build());
         car.setUsageCounter(0L);
     }
 
@@ -135,9 +230,69 @@ public class CarService {
         return year >= 1885 && year <= currentYear;
     }
 
-    @Transactional(rollbackFor = Exception.class)
+    /**
+     * registra o acesso ao carro em memoria, o contador do carro e o total do usuario
+     * sao gravados em lote pelo CarUsageAggregator e o historico pelo CarUsageHistory
+     */
     public void updateUsageCounter(Long carId) {
-        repository.updateUsageCounter(carId, requireNonNull(getUserLogged()).getId());
+        usageAggregator.record(carId, requireNonNull(getUserLogged()).getId());
+        usageHistory.record(carId);
+    }
+
+    /**
+     * soma os acessos que o cliente registrou offline, com uma consulta para validar
+     * que todos os carros pertencem ao usuario logado e um unico update para todos eles.
+     * O lote e aplicado por inteiro ou nao e aplicado
+     * @param usages pares carId e count, carros repetidos sao somados
+     * @throws ValidationException caso falte campo, count nao seja positivo, o lote passe
+     * do limite ou algum carro seja de outro usuario
+     * @throws EntityNotFoundException caso algum carro nao exista
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void reportUsage(List<CarUsageReportDTO> usages) {
+        if (usages == null || usages.isEmpty())
+            throw new ValidationException(MISSING_FIELDS);
+        if (usages.size() > reportMaxItems)
+            throw new ValidationException(INVALID_FIELDS);
+
+        Map<Long, Long> counts = new TreeMap<>();
+        for (CarUsageReportDTO usage : usages) {
+            if (usage == null || usage.getCarId() == null || usage.getCount() == null)
+                throw new ValidationException(MISSING_FIELDS);
+            if (usage.getCount() <= 0)
+                throw new ValidationException(INVALID_FIELDS);
+            counts.merge(usage.getCarId(), usage.getCount(), Long::sum);
+        }
+
+        Long userId = requireNonNull(getUserLogged()).getId();
+        List<Long> owners = repository.findUserIdsByIdIn(counts.keySet());
+        if (owners.size() != counts.size())
+            throw new EntityNotFoundException(CAR_NOT_FOUND);
+        if (owners.stream().anyMatch(owner -> !owner.equals(userId)))
+            throw new ValidationException(PERMISSION_DENIED);
+
+        if (usageAggregator.applyReport(userId, counts) != counts.size())
+            throw new EntityNotFoundException(CAR_NOT_FOUND);
+
+        counts.forEach(usageHistory::add);
+        leaderboard.addDelta(userId, counts.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    /**
+     * historico de acessos do carro do usuario logado na janela informada
+     * @param window hour (por minuto), day ou week (por hora)
+     * @throws ValidationException caso a janela seja invalida ou o carro seja de outro usuario
+     */
+    public CarUsageDTO findUsage(Long id, String window) {
+        Window usageWindow;
+        try {
+            usageWindow = Window.valueOf(window.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ValidationException(INVALID_FIELDS);
+        }
+
+        getCarIfUserHasPermission(id);
+        return usageHistory.usage(id, usageWindow);
     }
 
     private Car convertDTOtoEntity(CarDTO carDTO) {
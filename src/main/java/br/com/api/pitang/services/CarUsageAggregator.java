@@ -0,0 +1,225 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.repositories.CarUsageAppliedSegmentRepository;
+import br.com.api.pitang.services.CarUsageJournal.Segment;
+import br.com.api.pitang.services.CarUsageJournal.UsageKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import static java.time.ZoneOffset.UTC;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import static java.util.Collections.singletonMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.stream.Collectors.joining;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * agrega os acessos aos carros fora da requisicao: a requisicao apenas grava um
+ * registro no CarUsageJournal, sem transacao e sem lock de linha no banco. Um job
+ * fecha periodicamente o segmento ativo do journal, soma os registros por carro e
+ * grava tudo em um unico batch, somando ao total dos usuarios (pelo UserTotalCounter)
+ * apenas o que foi de fato gravado nos carros.
+ * <p>
+ * O segmento so e removido depois do commit, entao um flush com erro e refeito no
+ * proximo ciclo e os segmentos deixados por uma queda sao reaplicados na inicializacao.
+ * O id de cada segmento aplicado e gravado na mesma transacao em
+ * car_usage_applied_segments, entao um segmento ja aplicado que nao pode ser removido
+ * do disco e apenas descartado ao ser reaplicado.
+ * <p>
+ * O journal so sobrevive a queda da maquina com cars.usage.journal-dir em um disco
+ * persistente. Sem a configuracao ele fica no diretorio temporario, que pode ser limpo no
+ * boot (ou ser efemero, como no Heroku): os acessos ainda nao gravados podem ser perdidos
+ * e um aviso e registrado na inicializacao
+ */
+@Slf4j
+@Component
+public class CarUsageAggregator {
+
+    private static final String INSERT_APPLIED_SEGMENT =
+            "insert into car_usage_applied_segments (segment_id, applied_at) select ?, ? "
+                    + "where not exists (select 1 from car_usage_applied_segments where segment_id = ?)";
+
+    private static final String UPDATE_CAR_USAGE =
+            "update car_usage_counters set usage_counter = coalesce(usage_counter, 0) + ? "
+                    + "where car_id = (select id from cars where id = ? and user_id = ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserLeaderboard leaderboard;
+
+    @Autowired
+    private UserTotalCounter userTotalCounter;
+
+    @Autowired
+    private CarUsageAppliedSegmentRepository appliedSegmentRepository;
+
+    @Value("${cars.usage.applied-retention-days:30}")
+    private int appliedRetentionDays;
+
+    private final CarUsageJournal journal;
+    private final List<Segment> pending = new ArrayList<>();
+
+    public CarUsageAggregator(@Value("${cars.usage.journal-dir:${java.io.tmpdir}/pitang-car-usage}") String directory,
+                              @Value("${cars.usage.journal-records:65536}") int records,
+                              MeterRegistry registry) throws IOException {
+        Path path = Paths.get(directory).toAbsolutePath().normalize();
+        if (path.startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize()))
+            log.warn("Journal de uso dos carros em {}, diretorio temporario: acessos ainda nao gravados podem ser "
+                    + "perdidos em uma queda. Configure cars.usage.journal-dir (CAR_USAGE_JOURNAL_DIR) em um disco persistente", path);
+        this.journal = new CarUsageJournal(path, records);
+        registry.gauge("cars.usage.pending", journal, CarUsageJournal::pendingRecords);
+    }
+
+    public void record(Long carId, Long userId) {
+        if (!journal.append(carId, userId, 1L))
+            log.warn("Journal de uso fechado, acesso ao carro {} descartado", carId);
+    }
+
+    /**
+     * reaplica os segmentos do journal deixados por uma execucao que nao terminou,
+     * roda depois da inicializacao para que o schema do banco ja exista
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void replay() {
+        try {
+            List<Segment> segments = journal.recover();
+            if (!segments.isEmpty())
+                log.info("Reaplicando {} segmentos do journal de uso dos carros", segments.size());
+            pending.addAll(segments);
+        } catch (IOException ex) {
+            log.error("Falha ao ler o journal de uso dos carros em {}", journal.getDirectory(), ex);
+        }
+        flush();
+    }
+
+    /**
+     * grava os segmentos fechados, cada um em uma unica transacao: um batch para os
+     * carros e um batch com o delta do total dos usuarios, sem somatorio sobre os carros.
+     * Registros de carros que nao existem mais (nenhuma linha atualizada) sao descartados
+     * e nao entram no total do usuario
+     */
+    @Scheduled(fixedDelayString = "${cars.usage.flush-millis:1000}")
+    public synchronized void flush() {
+        pending.addAll(journal.rotate());
+
+        Iterator<Segment> segments = pending.iterator();
+        while (segments.hasNext()) {
+            Segment segment = segments.next();
+            try {
+                apply(segment.getId(), segment.fold()).forEach(leaderboard::addDelta);
+            } catch (DataAccessException ex) {
+                log.warn("Falha ao gravar o uso dos carros, nova tentativa no proximo ciclo", ex);
+                break;
+            }
+
+            segments.remove();
+            try {
+                segment.delete();
+            } catch (IOException ex) {
+                log.error("Segmento do journal ja aplicado nao pode ser removido", ex);
+            }
+        }
+
+        journal.force();
+    }
+
+    /**
+     * soma de uma vez os acessos informados aos carros do usuario, em um unico update
+     * com um case por carro e um update do total do usuario. Roda na transacao de quem
+     * chama, que deve ter validado antes que os carros pertencem ao usuario
+     * @param counts acessos por carro
+     * @return quantidade de carros atualizados
+     */
+    public int applyReport(Long userId, Map<Long, Long> counts) {
+        if (counts.isEmpty())
+            return 0;
+
+        List<Object> args = new ArrayList<>(counts.size() * 3 + 1);
+        counts.forEach((carId, count) -> {
+            args.add(carId);
+            args.add(count);
+        });
+        args.add(userId);
+        args.addAll(counts.keySet());
+
+        String sql = "update car_usage_counters set usage_counter = coalesce(usage_counter, 0) + case car_id "
+                + counts.keySet().stream().map(id -> "when ? then cast(? as bigint) ").collect(joining())
+                + "else 0 end where car_id in (select id from cars where user_id = ? and id in ("
+                + counts.keySet().stream().map(id -> "?").collect(joining(", ")) + "))";
+        int rows = jdbcTemplate.update(sql, args.toArray());
+
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        if (rows > 0)
+            userTotalCounter.increment(singletonMap(userId, total));
+        return rows;
+    }
+
+    /**
+     * Job para remover os ids de segmentos aplicados mais antigos que o prazo de retencao
+     */
+    @Scheduled(cron = "${spring.task.scheduling.cron}")
+    @Transactional(rollbackFor = Exception.class)
+    public void deleteExpiredAppliedSegments() {
+        appliedSegmentRepository.deleteOlderThan(LocalDateTime.now(UTC).minusDays(appliedRetentionDays));
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        journal.close();
+    }
+
+    /**
+     * @return delta aplicado ao total de cada usuario, vazio caso o segmento ja tenha
+     * sido aplicado antes
+     */
+    private Map<Long, Long> apply(String segmentId, Map<UsageKey, Long> usages) {
+        Map<Long, Long> userDeltas = new LinkedHashMap<>();
+        if (usages.isEmpty())
+            return userDeltas;
+
+        List<UsageKey> keys = new ArrayList<>(usages.keySet());
+        List<Object[]> carArgs = new ArrayList<>(keys.size());
+        keys.forEach(key -> carArgs.add(new Object[]{usages.get(key), key.getCarId(), key.getUserId()}));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now(UTC));
+            if (jdbcTemplate.update(INSERT_APPLIED_SEGMENT, segmentId, now, segmentId) == 0) {
+                log.info("Segmento {} do journal ja aplicado, descartando", segmentId);
+                return;
+            }
+
+            int[] rows = jdbcTemplate.batchUpdate(UPDATE_CAR_USAGE, carArgs);
+
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != 0)
+                    userDeltas.merge(keys.get(i).getUserId(), usages.get(keys.get(i)), Long::sum);
+            }
+
+            userTotalCounter.increment(userDeltas);
+        });
+        return userDeltas;
+    }
+}
@@ -0,0 +1,336 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.configs.DatabaseDialect;
+import br.com.api.pitang.data.dtos.CarUsageDTO;
+import br.com.api.pitang.data.models.CarUsageRollup;
+import br.com.api.pitang.repositories.CarUsageRollupRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import static java.lang.System.currentTimeMillis;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import static java.time.ZoneOffset.UTC;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * historico recente de acessos de cada carro em memoria, em buffers circulares de
+ * tamanho fixo com os ultimos 60 minutos e as ultimas 168 horas (arrays primitivos,
+ * cada posicao guarda o minuto ou hora a que pertence para descartar valores antigos).
+ * Consultar uma janela custa no maximo 168 posicoes, independente do volume de acessos.
+ * <p>
+ * Os acessos de cada hora recebidos desde a ultima gravacao sao somados periodicamente
+ * em car_usage_rollups, uma linha por carro e hora, e recarregados na inicializacao.
+ * Cada instancia grava apenas o seu delta (usage_count = usage_count + delta, com upsert
+ * para as horas novas), assim varias instancias somam na mesma linha sem sobrescrever
+ * umas as outras. Os minutos ficam apenas em memoria
+ */
+@Slf4j
+@Component
+public class CarUsageHistory {
+
+    static final int MINUTES = 60;
+    static final int HOURS = 168;
+
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private static final String UPSERT_ROLLUP =
+            "insert into car_usage_rollups (car_id, bucket_start, usage_count) select id, ?, ? from cars where id = ? "
+                    + "on conflict (car_id, bucket_start) do update set usage_count = car_usage_rollups.usage_count + excluded.usage_count";
+
+    private static final String MERGE_ROLLUP =
+            "merge into car_usage_rollups r using (select id as car_id, cast(? as timestamp) as bucket_start, "
+                    + "cast(? as bigint) as usage_count from cars where id = ?) d "
+                    + "on (r.car_id = d.car_id and r.bucket_start = d.bucket_start) "
+                    + "when matched then update set usage_count = r.usage_count + d.usage_count "
+                    + "when not matched then insert (car_id, bucket_start, usage_count) values (d.car_id, d.bucket_start, d.usage_count)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CarUsageRollupRepository rollupRepository;
+
+    @Autowired
+    private DatabaseDialect dialect;
+
+    @Value("${cars.usage.history.retention-days:30}")
+    private int retentionDays;
+
+    private final Map<Long, Buckets> cars = new ConcurrentHashMap<>();
+
+    public CarUsageHistory(MeterRegistry registry) {
+        registry.gaugeMapSize("cars.usage.history.cars", null, cars);
+    }
+
+    @Getter
+    public enum Window {
+
+        HOUR(MINUTES, "minute"),
+        DAY(24, "hour"),
+        WEEK(HOURS, "hour");
+
+        private final int buckets;
+        private final String bucket;
+
+        Window(int buckets, String bucket) {
+            this.buckets = buckets;
+            this.bucket = bucket;
+        }
+    }
+
+    public void record(Long carId) {
+        record(carId, currentTimeMillis());
+    }
+
+    void record(Long carId, long millis) {
+        add(carId, millis, 1L);
+    }
+
+    /**
+     * soma no minuto atual varios acessos ao carro, usado nos acessos informados em lote
+     */
+    public void add(Long carId, long count) {
+        add(carId, currentTimeMillis(), count);
+    }
+
+    private void add(Long carId, long millis, long count) {
+        while (!cars.computeIfAbsent(carId, id -> new Buckets()).add(millis / MINUTE_MILLIS, count))
+            Thread.onSpinWait();
+    }
+
+    public void remove(Long carId) {
+        Buckets buckets = cars.get(carId);
+        if (buckets != null) {
+            buckets.retire();
+            cars.remove(carId, buckets);
+        }
+    }
+
+    public CarUsageDTO usage(Long carId, Window window) {
+        return usage(carId, window, currentTimeMillis());
+    }
+
+    CarUsageDTO usage(Long carId, Window window, long millis) {
+        long[] values = new long[window.getBuckets()];
+        Buckets buckets = cars.get(carId);
+        if (buckets != null)
+            buckets.read(window, millis / MINUTE_MILLIS, values);
+
+        long total = 0;
+        List<Long> list = new ArrayList<>(values.length);
+        for (long value : values) {
+            total += value;
+            list.add(value);
+        }
+
+        return CarUsageDTO.builder()
+                .carId(carId)
+                .window(window.name().toLowerCase())
+                .bucket(window.getBucket())
+                .total(total)
+                .buckets(list)
+                .build();
+    }
+
+    /**
+     * recarrega as horas gravadas na ultima semana, somando aos acessos que
+     * eventualmente chegaram antes do fim da inicializacao
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long firstHour = currentTimeMillis() / HOUR_MILLIS - HOURS + 1;
+        for (CarUsageRollup rollup : rollupRepository.findAllByBucketStartGreaterThanEqual(toDateTime(firstHour))) {
+            long hour = rollup.getBucketStart().toEpochSecond(UTC) * 1000 / HOUR_MILLIS;
+            cars.computeIfAbsent(rollup.getCarId(), id -> new Buckets()).load(hour, rollup.getUsageCount());
+        }
+    }
+
+    /**
+     * soma em uma transacao os acessos de cada hora recebidos desde a ultima execucao
+     * e remove da memoria carros sem acesso na ultima semana
+     */
+    @Scheduled(fixedDelayString = "${cars.usage.history.rollup-millis:60000}",
+            initialDelayString = "${cars.usage.history.rollup-millis:60000}")
+    public synchronized void rollup() {
+        long currentHour = currentTimeMillis() / HOUR_MILLIS;
+        List<Long> carIds = new ArrayList<>();
+        List<long[]> rollups = new ArrayList<>();
+
+        cars.forEach((carId, buckets) -> {
+            for (long[] rollup : buckets.drainPending(currentHour)) {
+                carIds.add(carId);
+                rollups.add(rollup);
+            }
+            if (buckets.retireIfIdle(currentHour))
+                cars.remove(carId, buckets);
+        });
+
+        if (rollups.isEmpty())
+            return;
+
+        try {
+            List<Object[]> args = new ArrayList<>(rollups.size());
+            for (int i = 0; i < rollups.size(); i++)
+                args.add(new Object[]{toTimestamp(rollups.get(i)[0]), rollups.get(i)[1], carIds.get(i)});
+            String upsert = dialect.isPostgreSQL() ? UPSERT_ROLLUP : MERGE_ROLLUP;
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(upsert, args));
+        } catch (DataAccessException ex) {
+            log.warn("Falha ao gravar o historico de uso de {} carros, nova tentativa no proximo ciclo", carIds.size(), ex);
+            for (int i = 0; i < carIds.size(); i++) {
+                Buckets buckets = cars.get(carIds.get(i));
+                if (buckets != null)
+                    buckets.restorePending(rollups.get(i)[0], rollups.get(i)[1]);
+            }
+        }
+    }
+
+    /**
+     * Job para remover o historico de uso mais antigo que o prazo de retencao
+     */
+    @Scheduled(cron = "${spring.task.scheduling.cron}")
+    @Transactional(rollbackFor = Exception.class)
+    public void deleteExpiredRollups() {
+        rollupRepository.deleteOlderThan(LocalDateTime.now(UTC).minusDays(retentionDays));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rollup();
+    }
+
+    private static LocalDateTime toDateTime(long hour) {
+        return LocalDateTime.ofEpochSecond(hour * HOUR_MILLIS / 1000, 0, UTC);
+    }
+
+    private static Timestamp toTimestamp(long hour) {
+        return Timestamp.valueOf(toDateTime(hour));
+    }
+
+    private static final class Buckets {
+
+        private final long[] minutes = new long[MINUTES];
+        private final long[] minuteStamps = new long[MINUTES];
+        private final long[] hours = new long[HOURS];
+        private final long[] hourStamps = new long[HOURS];
+        private final long[] pending = new long[HOURS];
+        private long lastHour;
+        private boolean retired;
+
+        private synchronized boolean add(long minute, long count) {
+            if (retired)
+                return false;
+
+            int slot = (int) (minute % MINUTES);
+            if (minuteStamps[slot] < minute) {
+                minuteStamps[slot] = minute;
+                minutes[slot] = 0;
+            }
+            if (minuteStamps[slot] == minute)
+                minutes[slot] += count;
+
+            long hour = minute / MINUTES;
+            slot = hourSlot(hour);
+            if (slot < 0)
+                return true;
+
+            hours[slot] += count;
+            pending[slot] += count;
+            lastHour = Math.max(lastHour, hour);
+            return true;
+        }
+
+        private synchronized void load(long hour, long count) {
+            int slot = hourSlot(hour);
+            if (slot < 0)
+                return;
+
+            hours[slot] += count;
+            lastHour = Math.max(lastHour, hour);
+        }
+
+        /**
+         * posiciona o buffer na hora informada, zerando a posicao caso ela ainda
+         * guarde uma hora de uma semana anterior
+         * @return -1 caso a posicao ja guarde uma hora mais nova que a informada
+         */
+        private int hourSlot(long hour) {
+            int slot = (int) (hour % HOURS);
+            if (hourStamps[slot] > hour)
+                return -1;
+            if (hourStamps[slot] < hour) {
+                hourStamps[slot] = hour;
+                hours[slot] = 0;
+                pending[slot] = 0;
+            }
+            return slot;
+        }
+
+        private synchronized void read(Window window, long currentMinute, long[] values) {
+            boolean byMinute = window == Window.HOUR;
+            long current = byMinute ? currentMinute : currentMinute / MINUTES;
+            long[] stamps = byMinute ? minuteStamps : hourStamps;
+            long[] counts = byMinute ? minutes : hours;
+            int size = byMinute ? MINUTES : HOURS;
+
+            for (int i = 0; i < values.length; i++) {
+                long bucket = current - values.length + 1 + i;
+                int slot = (int) (bucket % size);
+                values[i] = stamps[slot] == bucket ? counts[slot] : 0;
+            }
+        }
+
+        /**
+         * acessos ainda nao gravados das horas dentro da semana, como pares {hora, delta}
+         */
+        private synchronized List<long[]> drainPending(long currentHour) {
+            List<long[]> rollups = new ArrayList<>();
+            for (int slot = 0; slot < HOURS; slot++) {
+                if (pending[slot] != 0 && hourStamps[slot] > currentHour - HOURS) {
+                    rollups.add(new long[]{hourStamps[slot], pending[slot]});
+                }
+                pending[slot] = 0;
+            }
+            return rollups;
+        }
+
+        private synchronized void restorePending(long hour, long delta) {
+            int slot = (int) (hour % HOURS);
+            if (hourStamps[slot] == hour)
+                pending[slot] += delta;
+        }
+
+        private synchronized boolean retireIfIdle(long currentHour) {
+            if (lastHour > currentHour - HOURS)
+                return false;
+            for (long slot : pending) {
+                if (slot != 0)
+                    return false;
+            }
+            retired = true;
+            return true;
+        }
+
+        private synchronized void retire() {
+            retired = true;
+        }
+    }
+}
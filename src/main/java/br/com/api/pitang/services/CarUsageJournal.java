@@ -0,0 +1,316 @@
+package br.com.api.pitang.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import static java.lang.System.currentTimeMillis;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static java.util.UUID.randomUUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * journal em disco dos acessos aos carros ainda nao gravados no banco. Cada segmento
+ * e um arquivo mapeado em memoria com registros de tamanho fixo de 32 bytes
+ * (carId, userId, delta, timestamp), a escrita reserva um slot com um incremento
+ * atomico e grava o registro direto no mapeamento, sem lock e sem chamada de sistema.
+ * <p>
+ * O carId e gravado por ultimo e serve como marcador de registro completo, slots com
+ * carId zero sao ignorados na leitura. Os segmentos ficam travados (FileLock) enquanto
+ * a instancia esta ativa, assim uma instancia nunca reaplica o journal de outra.
+ * <p>
+ * Os segmentos fechados sao enviados para o disco ao sair do rotate, e o mapeamento
+ * e desfeito ao liberar o segmento para o espaco do arquivo ser devolvido na hora,
+ * sem esperar o GC coletar o buffer. A entrega e pelo menos uma vez, quem aplica os
+ * segmentos deve usar o id do segmento para descartar reaplicacoes
+ */
+@Slf4j
+public class CarUsageJournal {
+
+    static final int RECORD_SIZE = 32;
+
+    private static final String PREFIX = "car-usage-";
+    private static final String SUFFIX = ".journal";
+
+    @Getter
+    private final Path directory;
+    private final int capacity;
+
+    private volatile Segment active;
+    private volatile boolean closed;
+    private final List<Segment> sealed = new ArrayList<>();
+
+    public CarUsageJournal(Path directory, int capacity) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.capacity = capacity;
+        Files.createDirectories(this.directory);
+        this.active = Segment.create(newFile(), capacity);
+    }
+
+    /**
+     * grava o registro no segmento ativo, abrindo um novo segmento quando o atual esta cheio
+     * @return false caso o journal ja tenha sido fechado
+     */
+    public boolean append(long carId, long userId, long delta) {
+        while (!closed) {
+            Segment segment = active;
+            int slot = segment.reserve();
+            if (slot >= 0) {
+                segment.write(slot, carId, userId, delta, currentTimeMillis());
+                return true;
+            }
+            seal(segment);
+        }
+        return false;
+    }
+
+    /**
+     * fecha o segmento ativo, caso tenha registros, e retorna todos os segmentos
+     * fechados desde a ultima chamada com as escritas em andamento ja concluidas e
+     * enviadas para o disco, assim segmentos que aguardam o banco sobrevivem a queda
+     * da maquina
+     */
+    public synchronized List<Segment> rotate() {
+        if (active.reservedSlots() > 0)
+            seal(active);
+
+        List<Segment> segments = new ArrayList<>(sealed);
+        sealed.clear();
+        for (Segment segment : segments) {
+            segment.awaitWriters();
+            segment.buffer.force();
+        }
+        return segments;
+    }
+
+    /**
+     * segmentos deixados por uma execucao que terminou sem aplica-los. Segmentos
+     * travados por outra instancia em execucao sao ignorados
+     */
+    public List<Segment> recover() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                Segment segment = Segment.open(file);
+                if (segment != null)
+                    segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    public long pendingRecords() {
+        return active.reservedSlots();
+    }
+
+    /**
+     * envia para o disco as paginas alteradas do segmento ativo, sem isso os registros
+     * sobrevivem a queda do processo mas nao a queda da maquina
+     */
+    public void force() {
+        active.buffer.force();
+    }
+
+    /**
+     * fecha o journal, o segmento ativo e removido se estiver vazio, caso contrario
+     * continua no diretorio para ser reaplicado na proxima inicializacao
+     */
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        Segment segment = active;
+        segment.seal();
+        segment.awaitWriters();
+        if (segment.size == 0) {
+            segment.delete();
+        } else {
+            segment.buffer.force();
+            segment.release();
+        }
+    }
+
+    private synchronized void seal(Segment segment) {
+        if (segment != active || closed)
+            return;
+
+        segment.seal();
+        sealed.add(segment);
+        try {
+            active = Segment.create(newFile(), capacity);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private Path newFile() {
+        return directory.resolve(PREFIX + randomUUID() + SUFFIX);
+    }
+
+    /**
+     * desfaz o mapeamento na hora pelo Unsafe.invokeCleaner (jdk.unsupported), caso nao
+     * esteja disponivel o mapeamento fica para o GC. O buffer nao pode ser usado depois
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            log.debug("Mapeamento do segmento fica para o GC", ex);
+        }
+    }
+
+    @Value
+    public static class UsageKey {
+
+        long carId;
+        long userId;
+    }
+
+    public static final class Segment {
+
+        private static final long SEALED = 1L << 62;
+
+        /**
+         * arquivos abertos nesta JVM, no Linux fechar qualquer canal de um arquivo libera
+         * o lock de todos os canais do processo, entao esses arquivos nem sao abertos
+         */
+        private static final Set<Path> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+        private final Path file;
+        private final FileChannel channel;
+        private final FileLock lock;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+
+        private final AtomicLong reserved = new AtomicLong();
+        private final LongAdder written = new LongAdder();
+        private volatile int size;
+        private int pendingWrites;
+
+        /**
+         * id do segmento, unico entre instancias (uuid do nome do arquivo)
+         */
+        public String getId() {
+            String name = file.getFileName().toString();
+            return name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+        }
+
+        private Segment(Path file, FileChannel channel, FileLock lock, int capacity) throws IOException {
+            OPEN_FILES.add(file);
+            this.file = file;
+            this.channel = channel;
+            this.lock = lock;
+            this.capacity = capacity;
+            this.buffer = channel.map(READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        }
+
+        private static Segment create(Path file, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(file, CREATE_NEW, READ, WRITE);
+            return new Segment(file, channel, channel.lock(), capacity);
+        }
+
+        private static Segment open(Path file) throws IOException {
+            if (OPEN_FILES.contains(file))
+                return null;
+
+            FileChannel channel = FileChannel.open(file, READ, WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                lock = null;
+            }
+
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+
+            Segment segment = new Segment(file, channel, lock, (int) (channel.size() / RECORD_SIZE));
+            segment.reserved.set(SEALED);
+            segment.size = segment.capacity;
+            segment.pendingWrites = 0;
+            return segment;
+        }
+
+        private int reserve() {
+            long slot = reserved.getAndIncrement();
+            return slot < capacity ? (int) slot : -1;
+        }
+
+        private void write(int slot, long carId, long userId, long delta, long timestamp) {
+            int offset = slot * RECORD_SIZE;
+            buffer.putLong(offset + 8, userId);
+            buffer.putLong(offset + 16, delta);
+            buffer.putLong(offset + 24, timestamp);
+            buffer.putLong(offset, carId);
+            written.increment();
+        }
+
+        private long reservedSlots() {
+            return Math.min(reserved.get() & ~SEALED, capacity);
+        }
+
+        private void seal() {
+            size = (int) Math.min(reserved.getAndUpdate(state -> state | SEALED) & ~SEALED, capacity);
+            pendingWrites = size;
+        }
+
+        private void awaitWriters() {
+            while (written.sum() < pendingWrites)
+                Thread.onSpinWait();
+        }
+
+        /**
+         * soma os deltas dos registros completos por carro e usuario
+         */
+        public Map<UsageKey, Long> fold() {
+            Map<UsageKey, Long> usages = new HashMap<>();
+            for (int slot = 0; slot < size; slot++) {
+                int offset = slot * RECORD_SIZE;
+                long carId = buffer.getLong(offset);
+                if (carId != 0)
+                    usages.merge(new UsageKey(carId, buffer.getLong(offset + 8)), buffer.getLong(offset + 16), Long::sum);
+            }
+            return usages;
+        }
+
+        public void delete() throws IOException {
+            release();
+            Files.deleteIfExists(file);
+        }
+
+        private void release() throws IOException {
+            unmap(buffer);
+            lock.release();
+            channel.close();
+            OPEN_FILES.remove(file);
+        }
+    }
+}
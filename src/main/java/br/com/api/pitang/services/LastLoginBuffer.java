@@ -0,0 +1,88 @@
+package br.com.api.pitang.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import static org.springframework.transaction.TransactionDefinition.PROPAGATION_REQUIRES_NEW;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * fila em memoria das atualizacoes do ultimo login. O login apenas registra o
+ * horario no mapa (mantendo so o mais recente de cada usuario) e um job grava
+ * todos de uma vez em um unico batch, fora do caminho da requisicao.
+ * <p>
+ * O batch roda sempre em uma transacao propria, entao chamar o flush de dentro de
+ * outra transacao (como o job de usuarios inativos) grava os logins mesmo que a
+ * transacao de quem chamou seja desfeita
+ */
+@Slf4j
+@Component
+public class LastLoginBuffer {
+
+    private static final String UPDATE_LAST_LOGIN =
+            "update users set last_login = ? where id = ? and (last_login is null or last_login < ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final TransactionTemplate newTransaction;
+
+    public LastLoginBuffer(MeterRegistry registry, PlatformTransactionManager transactionManager) {
+        registry.gaugeMapSize("users.last-login.pending", null, pending);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void record(Long userId, LocalDateTime lastLogin) {
+        pending.merge(userId, lastLogin, (current, next) -> next.isAfter(current) ? next : current);
+    }
+
+    /**
+     * grava os ultimos logins pendentes em um batch, o where impede que um horario
+     * mais antigo sobrescreva um mais novo. Em caso de erro as entradas voltam
+     * para a fila e sao gravadas no proximo ciclo
+     */
+    @Scheduled(fixedDelayString = "${users.last-login.flush-millis:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty())
+            return;
+
+        List<Map.Entry<Long, LocalDateTime>> batch = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            LocalDateTime lastLogin = pending.remove(userId);
+            if (lastLogin != null)
+                batch.add(Map.entry(userId, lastLogin));
+        }
+
+        List<Object[]> args = new ArrayList<>(batch.size());
+        batch.forEach(entry -> {
+            Timestamp lastLogin = Timestamp.valueOf(entry.getValue());
+            args.add(new Object[]{lastLogin, entry.getKey(), lastLogin});
+        });
+
+        try {
+            newTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN, args));
+        } catch (DataAccessException ex) {
+            log.warn("Falha ao gravar {} ultimos logins, nova tentativa no proximo ciclo", batch.size(), ex);
+            batch.forEach(entry -> record(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,110 @@
+package br.com.api.pitang.services;
+
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_REFRESH_TOKEN;
+import br.com.api.pitang.data.models.RefreshToken;
+import br.com.api.pitang.data.models.User;
+import br.com.api.pitang.exceptions.UnauthorizedException;
+import br.com.api.pitang.repositories.RefreshTokenRepository;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import static java.time.LocalDateTime.now;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Base64.getUrlEncoder;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * emissao e rotacao dos refresh tokens. O token enviado ao cliente sao 32 bytes
+ * aleatorios e a validacao e apenas um SHA-256 seguido de uma busca pelo indice
+ * unico, sem BCrypt e sem passar pelo AuthenticationManager
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Value("${security.jwt.refresh-token.expire-days:7}")
+    private long refreshTokenExpire = 7;
+
+    @Autowired
+    private RefreshTokenRepository repository;
+
+    /**
+     * gera um novo refresh token para o usuario
+     * @param user usuario autenticado
+     * @return token que deve ser enviado ao cliente, apenas o hash dele e salvo
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public String create(User user) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime timeNow = now();
+        repository.save(RefreshToken.builder()
+                .tokenHash(hash(token))
+                .user(user)
+                .createdAt(timeNow)
+                .expiresAt(timeNow.plusDays(refreshTokenExpire))
+                .build());
+
+        return token;
+    }
+
+    /**
+     * consome o refresh token informado, o mesmo token nao pode ser usado
+     * novamente e o chamador deve emitir um novo junto com o novo token de acesso
+     * @param token refresh token enviado pelo cliente
+     * @return usuario dono do token
+     * @throws UnauthorizedException caso o token nao exista, esteja expirado
+     * ou ja tenha sido usado por outra requisicao
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public User consume(String token) {
+        if (isBlank(token))
+            throw new UnauthorizedException(INVALID_REFRESH_TOKEN);
+
+        RefreshToken refreshToken = repository.findDistinctByTokenHash(hash(token))
+                .orElseThrow(() -> new UnauthorizedException(INVALID_REFRESH_TOKEN));
+
+        if (repository.consume(refreshToken.getId()) == 0 || refreshToken.getExpiresAt().isBefore(now()))
+            throw new UnauthorizedException(INVALID_REFRESH_TOKEN);
+
+        return refreshToken.getUser();
+    }
+
+    /**
+     * invalida o refresh token no logout, tokens inexistentes sao ignorados
+     * @param token refresh token enviado pelo cliente
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void revoke(String token) {
+        if (!isBlank(token))
+            repository.deleteByTokenHash(hash(token));
+    }
+
+    /**
+     * Job para remover do banco os refresh tokens expirados,
+     * roda no mesmo horario da limpeza de usuarios inativos
+     */
+    @Scheduled(cron = "${spring.task.scheduling.cron}")
+    @Transactional(rollbackFor = Exception.class)
+    public void deleteExpired() {
+        repository.deleteExpired(now());
+    }
+
+    private String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(US_ASCII));
+            return getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
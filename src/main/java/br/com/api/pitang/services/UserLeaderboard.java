@@ -0,0 +1,425 @@
+package br.com.api.pitang.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.concurrent.ThreadLocalRandom.current;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+
+/**
+ * ranking dos usuarios em memoria na ordem do bonus stage (totalUsageCounter
+ * decrescente e login crescente), em uma arvore de estatistica de ordem (treap onde
+ * cada no guarda o tamanho da subarvore). Paginas e posicao de um usuario custam
+ * O(log n) ao inves de ordenar e contar a tabela de usuarios a cada consulta.
+ * <p>
+ * A arvore e montada a partir do banco na inicializacao e atualizada pelos servicos
+ * apos o commit de cada alteracao. Como outras instancias e escritas diretas no banco
+ * nao passam por aqui, ela e remontada periodicamente
+ */
+@Component
+public class UserLeaderboard {
+
+    private static final String SELECT_USERS = "select u.id, u.login, coalesce(t.total_usage_counter, 0) "
+            + "+ (select coalesce(sum(s.delta), 0) from user_usage_counter_shards s where s.user_id = u.id) "
+            + "from users u join user_usage_counters t on t.user_id = u.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, Node> nodes = new HashMap<>();
+    private Node root;
+    private List<Runnable> pending;
+    private volatile boolean loaded;
+
+    public UserLeaderboard(MeterRegistry registry) {
+        registry.gauge("users.leaderboard.size", this, UserLeaderboard::size);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * carrega o ranking na primeira consulta caso ele ainda nao tenha sido montado
+     * (requisicoes antes do ApplicationReadyEvent ou falha na carga inicial). As consultas
+     * do ranking nao tem outro caminho: ordenar a tabela pelo contador exigiria um indice
+     * em user_usage_counters.total_usage_counter, que impede HOT updates no contador
+     */
+    public void ensureLoaded() {
+        if (loaded)
+            return;
+
+        synchronized (this) {
+            if (!loaded)
+                rebuild();
+        }
+    }
+
+    /**
+     * remonta o ranking a partir do banco, a consulta roda fora do lock e a
+     * arvore nova substitui a atual de uma vez. Apenas uma remontagem roda por vez,
+     * quem chega durante a carga inicial espera por ela ao inves de repetir a consulta.
+     * As alteracoes aplicadas enquanto a consulta roda sao guardadas e reaplicadas na
+     * arvore nova, senao as que fizeram commit depois da leitura seriam perdidas ate a
+     * proxima remontagem. Um delta com commit pouco antes da leitura pode ser contado
+     * duas vezes, a diferenca e corrigida na remontagem seguinte
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${users.leaderboard.rebuild-millis:300000}",
+            initialDelayString = "${users.leaderboard.rebuild-millis:300000}")
+    public synchronized void rebuild() {
+        List<Runnable> missed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            pending = missed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Node> rebuilt = new HashMap<>();
+        Node[] tree = new Node[1];
+        try {
+            jdbcTemplate.query(SELECT_USERS, rs -> {
+                Node node = new Node(rs.getLong(1), rs.getString(2), rs.getLong(3), current().nextInt());
+                rebuilt.put(node.id, node);
+                tree[0] = insert(tree[0], node);
+            });
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw ex;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pending = null;
+            nodes = rebuilt;
+            root = tree[0];
+            missed.forEach(Runnable::run);
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * remonta o ranking apos o commit da transacao atual, usado em alteracoes em massa
+     */
+    public void rebuildAfterCommit() {
+        afterCommit(this::rebuild);
+    }
+
+    /**
+     * insere ou atualiza o usuario no ranking apos o commit
+     * @param counter contador do usuario, null mantem o contador atual (apenas o login muda)
+     */
+    public void put(Long id, String login, Long counter) {
+        if (id == null)
+            return;
+
+        afterCommit(() -> apply(() -> {
+            Node existing = nodes.get(id);
+            long value = counter != null ? counter : existing != null ? existing.counter : 0L;
+            replace(existing, new Node(id, login, value, current().nextInt()));
+        }));
+    }
+
+    public void addDelta(Long id, long delta) {
+        if (id == null || delta == 0)
+            return;
+
+        afterCommit(() -> apply(() -> {
+            Node existing = nodes.get(id);
+            if (existing != null)
+                replace(existing, new Node(id, existing.login, existing.counter + delta, current().nextInt()));
+        }));
+    }
+
+    public void remove(Long id) {
+        if (id == null)
+            return;
+
+        afterCommit(() -> apply(() -> replace(nodes.get(id), null)));
+    }
+
+    /**
+     * ids dos usuarios na ordem do ranking a partir da posicao offset (comecando em zero)
+     */
+    public List<Long> page(long offset, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            collect(root, offset, limit, ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+    /**
+     * ids dos usuarios na ordem do ranking logo depois da chave informada, que nao
+     * precisa estar no ranking (o usuario pode ter mudado de posicao ou sido removido)
+     */
+    public List<Long> pageAfter(long counter, String login, long id, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        Node key = new Node(id, login, counter, 0);
+        lock.readLock().lock();
+        try {
+            collectAfter(root, key, limit, ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+    /**
+     * posicao do usuario no ranking, comecando em 1
+     * @return null caso o usuario nao esteja no ranking
+     */
+    public Long rank(Long id) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(id);
+            if (node == null)
+                return null;
+
+            long rank = 1;
+            Node current = root;
+            while (current != null) {
+                int cmp = compare(node, current);
+                if (cmp < 0) {
+                    current = current.left;
+                } else {
+                    rank += size(current.left);
+                    if (cmp == 0)
+                        return rank;
+                    rank++;
+                    current = current.right;
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Long counter(Long id) {
+        lock.readLock().lock();
+        try {
+            Node node = nodes.get(id);
+            return node != null ? node.counter : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * aplica a alteracao na arvore atual e, durante uma remontagem, guarda a alteracao
+     * para reaplica-la na arvore nova
+     */
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (pending != null)
+                pending.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void replace(Node current, Node replacement) {
+        if (current != null) {
+            root = delete(root, current);
+            nodes.remove(current.id);
+        }
+        if (replacement != null) {
+            root = insert(root, replacement);
+            nodes.put(replacement.id, replacement);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * ordem do ranking: maior contador primeiro, empate pelo login e depois pelo id
+     */
+    private static int compare(Node a, Node b) {
+        int cmp = Long.compare(b.counter, a.counter);
+        if (cmp == 0)
+            cmp = compareLogin(a.login, b.login);
+        if (cmp == 0)
+            cmp = Long.compare(a.id, b.id);
+        return cmp;
+    }
+
+    private static int compareLogin(String a, String b) {
+        if (a == null || b == null)
+            return a == null ? (b == null ? 0 : -1) : 1;
+        return a.compareTo(b);
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private static Node insert(Node tree, Node node) {
+        if (tree == null)
+            return update(node);
+
+        if (node.priority > tree.priority) {
+            Node[] parts = split(tree, node);
+            node.left = parts[0];
+            node.right = parts[1];
+            return update(node);
+        }
+
+        if (compare(node, tree) < 0)
+            tree.left = insert(tree.left, node);
+        else
+            tree.right = insert(tree.right, node);
+        return update(tree);
+    }
+
+    private static Node delete(Node tree, Node node) {
+        if (tree == null)
+            return null;
+
+        int cmp = compare(node, tree);
+        if (cmp == 0)
+            return merge(tree.left, tree.right);
+
+        if (cmp < 0)
+            tree.left = delete(tree.left, node);
+        else
+            tree.right = delete(tree.right, node);
+        return update(tree);
+    }
+
+    /**
+     * separa a arvore em {nos antes do no informado, nos depois dele}
+     */
+    private static Node[] split(Node tree, Node node) {
+        if (tree == null)
+            return new Node[2];
+
+        if (compare(tree, node) < 0) {
+            Node[] parts = split(tree.right, node);
+            tree.right = parts[0];
+            parts[0] = update(tree);
+            return parts;
+        }
+
+        Node[] parts = split(tree.left, node);
+        tree.left = parts[1];
+        parts[1] = update(tree);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static void collect(Node tree, long offset, int limit, List<Long> ids) {
+        if (tree == null || ids.size() >= limit)
+            return;
+
+        int leftSize = size(tree.left);
+        if (offset < leftSize)
+            collect(tree.left, offset, limit, ids);
+
+        if (ids.size() < limit && offset <= leftSize)
+            ids.add(tree.id);
+
+        if (ids.size() < limit)
+            collect(tree.right, Math.max(0, offset - leftSize - 1), limit, ids);
+    }
+
+    private static void collectAfter(Node tree, Node key, int limit, List<Long> ids) {
+        if (tree == null || ids.size() >= limit)
+            return;
+
+        if (compare(tree, key) <= 0) {
+            collectAfter(tree.right, key, limit, ids);
+            return;
+        }
+
+        collectAfter(tree.left, key, limit, ids);
+        if (ids.size() < limit)
+            ids.add(tree.id);
+        collectAfter(tree.right, key, limit, ids);
+    }
+
+    private static final class Node {
+
+        private final long id;
+        private final String login;
+        private final long counter;
+        private final int priority;
+
+        private int size;
+        private Node left;
+        private Node right;
+
+        private Node(long id, String login, long counter, int priority) {
+            this.id = id;
+            this.login = login;
+            this.counter = counter;
+            this.priority = priority;
+        }
+    }
+}
@@ -5,39 +5,78 @@ import static br.com.api.pitang.constants.MessagesConstants.INVALID_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.LOGIN_ALREADY_EXISTS;
 import static br.com.api.pitang.constants.MessagesConstants.MISSING_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.USER_NOT_FOUND;
+import br.com.api.pitang.configs.security.UserDetailCache;
+import br.com.api.pitang.data.dtos.CursorPageDTO;
 import br.com.api.pitang.data.dtos.UserDTO;
+import br.com.api.pitang.data.dtos.UserRankDTO;
+import br.com.api.pitang.data.models.AppCounter;
 import br.com.api.pitang.data.models.User;
 import br.com.api.pitang.exceptions.ValidationException;
+import br.com.api.pitang.repositories.AppCounterRepository;
+import br.com.api.pitang.repositories.RefreshTokenRepository;
 import br.com.api.pitang.repositories.UserRepository;
+import br.com.api.pitang.utils.CursorUtils.Cursor;
+import static br.com.api.pitang.utils.CursorUtils.decode;
+import static br.com.api.pitang.utils.CursorUtils.encode;
 import static br.com.api.pitang.utils.DozerConverter.convertObject;
-import static br.com.api.pitang.utils.GenericUtils.generatePasswordHash;
 import static br.com.api.pitang.utils.GenericUtils.getUserLogged;
 import static br.com.api.pitang.utils.GenericUtils.isValidEmail;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import static java.time.LocalDateTime.now;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.ThreadLocalRandom.current;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import javax.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import static org.springframework.data.domain.Sort.Order.asc;
 import static org.springframework.data.domain.Sort.Order.desc;
 import static org.springframework.data.domain.Sort.by;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 
+@Slf4j
 @Service
 public class UserService {
 
     @Autowired
     private UserRepository repository;
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private LastLoginBuffer lastLoginBuffer;
+
+    @Autowired
+    private UserDetailCache userDetailCache;
+
+    @Autowired
+    private UserLeaderboard leaderboard;
+
+    @Autowired
+    private AppCounterRepository appCounterRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
     @Transactional(rollbackFor = Exception.class)
     public UserDTO save(UserDTO userDTO) {
         User user = convertDTOtoEntity(userDTO);
@@ -45,15 +84,110 @@ public class UserService {
         validateFields(user);
         unique(user);
 
+        boolean insert = user.getId() == null;
         user = repository.save(user);
+        if (insert)
+            incrementUserCount(1L);
+        else if (!isBlank(userDTO.getPassword()))
+            refreshTokenRepository.deleteAllByUserId(user.getId());
+        userDetailCache.invalidate(user.getId());
+        leaderboard.put(user.getId(), user.getLogin(), insert ? user.getTotalUsageCounter() : null);
         return convertEntityToDTO(user);
     }
 
+    /**
+     * pagina do ranking do bonus stage, a ordem e o total vem do UserLeaderboard e o
+     * banco e consultado apenas pelos ids da pagina, sem ordenar a tabela de usuarios
+     * e sem count(*)
+     */
     public Page<UserDTO> findAll(int pageNumber, int pageSize) {
         Sort sort = by(desc("totalUsageCounter"), asc("login"));
         Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
-        Page<User> users = repository.findAll(pageable);
-        return users.map(this::convertEntityToDTO);
+        leaderboard.ensureLoaded();
+
+        List<Long> ids = leaderboard.page(pageable.getOffset(), pageSize);
+        List<UserDTO> content = findAllInOrder(ids).stream()
+                .map(this::convertEntityToDTO)
+                .collect(toList());
+        return new PageImpl<>(content, pageable, leaderboard.size());
+    }
+
+    /**
+     * fatia do ranking do bonus stage, busca pageSize + 1 usuarios e informa apenas
+     * se ha proxima pagina, sem total
+     */
+    public Slice<UserDTO> findSlice(int pageNumber, int pageSize) {
+        Sort sort = by(desc("totalUsageCounter"), asc("login"));
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
+        leaderboard.ensureLoaded();
+
+        List<Long> ids = leaderboard.page(pageable.getOffset(), pageSize + 1);
+        boolean hasNext = ids.size() > pageSize;
+        List<UserDTO> content = findAllInOrder(hasNext ? ids.subList(0, pageSize) : ids).stream()
+                .map(this::convertEntityToDTO)
+                .collect(toList());
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    /**
+     * pagina do ranking por cursor (keyset): a pagina comeca logo depois da chave
+     * (totalUsageCounter, login, id) do cursor, sem offset e sem count, entao o custo
+     * nao cresce com a profundidade da pagina. Cursor vazio retorna a primeira pagina
+     * @throws ValidationException caso o cursor ou o tamanho da pagina sejam invalidos
+     */
+    public CursorPageDTO<UserDTO> findAll(String cursor, int pageSize) {
+        if (pageSize < 1)
+            throw new ValidationException(INVALID_FIELDS);
+
+        Cursor after = isBlank(cursor) ? null : decode(cursor);
+        leaderboard.ensureLoaded();
+        List<Long> ids = after == null
+                ? leaderboard.page(0, pageSize + 1)
+                : leaderboard.pageAfter(after.getCounter(), after.getText(), after.getId(), pageSize + 1);
+        List<User> users = findAllInOrder(ids);
+
+        String nextCursor = null;
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            User last = users.get(pageSize - 1);
+            Long counter = leaderboard.counter(last.getId());
+            nextCursor = encode(counter != null ? counter : 0L, last.getLogin(), last.getId());
+        }
+
+        return CursorPageDTO.<UserDTO>builder()
+                .content(users.stream().map(this::convertEntityToDTO).collect(toList()))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * busca os usuarios pelos ids mantendo a ordem dos ids
+     */
+    private List<User> findAllInOrder(List<Long> ids) {
+        Map<Long, User> users = repository.findAllById(ids).stream()
+                .collect(toMap(User::getId, identity()));
+
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(toList());
+    }
+
+    /**
+     * posicao do usuario no ranking do bonus stage
+     * @throws EntityNotFoundException caso o usuario nao esteja no ranking
+     */
+    public UserRankDTO findRank(Long id) {
+        leaderboard.ensureLoaded();
+        Long rank = leaderboard.rank(id);
+        if (rank == null)
+            throw new EntityNotFoundException(USER_NOT_FOUND);
+
+        return UserRankDTO.builder()
+                .id(id)
+                .rank(rank)
+                .totalUsageCounter(leaderboard.counter(id))
+                .build();
     }
 
     public UserDTO findById(Long id) {
@@ -66,15 +200,43 @@ public class UserService {
                 .orElseThrow(() -> new EntityNotFoundException(USER_NOT_FOUND));
     }
 
-    @Transactional(rollbackFor = Exception.class)
+    /**
+     * o ultimo login e gravado em segundo plano pelo LastLoginBuffer,
+     * podendo levar alguns segundos para aparecer no banco
+     */
     public void updateLastLogin(Long userId) {
-        repository.updateLastLogin(userId, now());
+        lastLoginBuffer.record(userId, now());
+    }
+
+    /**
+     * troca o hash apenas se o hash salvo ainda for o informado e, na mesma transacao,
+     * revoga os refresh tokens emitidos antes da troca
+     * @param issuedBefore tokens criados a partir desse instante sao mantidos
+     * @return false caso a senha tenha sido alterada antes
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean updatePassword(Long userId, String oldPassword, String newPassword, LocalDateTime issuedBefore) {
+        int updated = repository.updatePassword(userId, oldPassword, newPassword);
+        if (updated > 0)
+            refreshTokenRepository.deleteAllByUserIdAndCreatedAtBefore(userId, issuedBefore);
+        userDetailCache.invalidate(userId);
+        return updated > 0;
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void delete(Long id) {
         findById(id);
         repository.deleteById(id);
+        incrementUserCount(-1L);
+        userDetailCache.invalidate(id);
+        leaderboard.remove(id);
+    }
+
+    /**
+     * soma ao total de usuarios em um shard ao acaso de app_counters
+     */
+    private void incrementUserCount(long delta) {
+        appCounterRepository.increment(AppCounter.USERS, current().nextInt(AppCounter.SHARDS), delta);
     }
 
     /**
@@ -124,7 +286,7 @@ public class UserService {
             throw new ValidationException(INVALID_FIELDS);
 
         user.setCreatedAt(now());
-        user.setPassword(generatePasswordHash(user.getPassword()));
+        user.setPassword(passwordEncoder.encode(user.getPassword()));
         user.setTotalUsageCounter(0L);
     }
 
@@ -142,7 +304,7 @@ public class UserService {
             if (user.getPassword().length() < 6)
                 throw new ValidationException(INVALID_FIELDS);
             else
-                user.setPassword(generatePasswordHash(user.getPassword()));
+                user.setPassword(passwordEncoder.encode(user.getPassword()));
         } else
             user.setPassword(userSaved.getPassword());
 
@@ -172,8 +334,16 @@ public class UserService {
         return convertObject(entityDTO, User.class);
     }
 
+    /**
+     * com o ranking carregado o total vem do UserLeaderboard, que ja soma os deltas
+     * dos shards, assim o total exibido e o mesmo usado na ordem da pagina
+     */
     private UserDTO convertEntityToDTO(User user) {
-        return convertObject(user, UserDTO.class);
+        UserDTO userDTO = convertObject(user, UserDTO.class);
+        Long counter = leaderboard.isLoaded() ? leaderboard.counter(user.getId()) : null;
+        if (counter != null)
+            userDTO.setTotalUsageCounter(counter);
+        return userDTO;
     }
 
     /**
@@ -183,7 +353,11 @@ public class UserService {
     @Scheduled(cron = "${spring.task.scheduling.cron}")
     @Transactional(rollbackFor = Exception.class)
     public void deleteInactiveUsers() {
+        lastLoginBuffer.flush();
         repository.deleteInactiveUsers(LocalDateTime.now().minusDays(30));
+        appCounterRepository.refreshUserCount();
+        userDetailCache.invalidateAll();
+        leaderboard.rebuildAfterCommit();
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -191,4 +365,26 @@ public class UserService {
        repository.updateTotalUsageCounter(requireNonNull(getUserLogged()).getId());
     }
 
+    /**
+     * Job para corrigir o totalUsageCounter dos usuarios que divergiram do somatorio
+     * dos carros, o total e mantido por delta e pode acumular diferenca caso um carro
+     * seja removido enquanto acessos dele estao sendo gravados. Corrige tambem a
+     * quantidade de carros e o total de usuarios usados nas paginas
+     */
+    @Scheduled(cron = "${users.usage.reconcile-cron:0 0 4 * * ?}")
+    @Transactional(rollbackFor = Exception.class)
+    public void reconcileTotalUsageCounters() {
+        int carCounts = repository.reconcileCarCounts();
+        int userCount = appCounterRepository.refreshUserCount();
+        if (carCounts > 0 || userCount > 0)
+            log.info("Quantidade de carros corrigida para {} usuarios e total de usuarios corrigido: {}",
+                    carCounts, userCount > 0);
+
+        int repaired = repository.reconcileTotalUsageCounters();
+        if (repaired > 0) {
+            log.info("Contador total de utilizacao corrigido para {} usuarios", repaired);
+            leaderboard.rebuildAfterCommit();
+        }
+    }
+
 }
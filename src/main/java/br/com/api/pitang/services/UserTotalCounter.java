@@ -0,0 +1,116 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.configs.DatabaseDialect;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.concurrent.ThreadLocalRandom.current;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * soma os acessos ao total dos usuarios. Por padrao o delta vai direto para
+ * user_usage_counters, uma linha por usuario que trava a cada lote de acessos.
+ * <p>
+ * Com users.usage.shards maior que zero, cada incremento vai para uma de N linhas
+ * de user_usage_counter_shards escolhida ao acaso, assim lotes concorrentes de uma
+ * mesma conta grande nao disputam a mesma linha. O total real passa a ser o
+ * totalUsageCounter mais a soma dos shards, e um job move periodicamente os deltas
+ * para o totalUsageCounter subtraindo dos shards apenas o valor lido, sem perder
+ * incrementos feitos durante a compactacao. O incremento do shard e um upsert
+ * (insert ... on conflict no PostgreSQL, merge no H2), entao duas transacoes que criam
+ * a mesma linha ao mesmo tempo somam os dois deltas em vez de falhar com chave duplicada
+ */
+@Slf4j
+@Component
+public class UserTotalCounter {
+
+    private static final String UPDATE_USER_TOTAL =
+            "update user_usage_counters set total_usage_counter = coalesce(total_usage_counter, 0) + ? where user_id = ?";
+
+    private static final String UPSERT_SHARD =
+            "insert into user_usage_counter_shards (shard, user_id, delta) select ?, id, ? from users where id = ? "
+                    + "on conflict (shard, user_id) do update set delta = user_usage_counter_shards.delta + excluded.delta";
+
+    private static final String MERGE_SHARD =
+            "merge into user_usage_counter_shards s using (select cast(? as int) as shard, id as user_id, "
+                    + "cast(? as bigint) as delta from users where id = ?) d "
+                    + "on (s.shard = d.shard and s.user_id = d.user_id) "
+                    + "when matched then update set delta = s.delta + d.delta "
+                    + "when not matched then insert (shard, user_id, delta) values (d.shard, d.user_id, d.delta)";
+
+    private static final String COMPACT_SHARD =
+            "update user_usage_counter_shards set delta = delta - ? where user_id = ? and shard = ?";
+
+    private static final String SELECT_PENDING_SHARDS =
+            "select user_id, shard, delta from user_usage_counter_shards where delta <> 0";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DatabaseDialect dialect;
+
+    @Value("${users.usage.shards:0}")
+    private int shards;
+
+    /**
+     * soma os deltas ao total dos usuarios na transacao de quem chama
+     * @param deltas delta por usuario
+     */
+    public void increment(Map<Long, Long> deltas) {
+        if (deltas.isEmpty())
+            return;
+
+        if (shards <= 0) {
+            List<Object[]> args = new ArrayList<>(deltas.size());
+            deltas.forEach((userId, delta) -> args.add(new Object[]{delta, userId}));
+            jdbcTemplate.batchUpdate(UPDATE_USER_TOTAL, args);
+            return;
+        }
+
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((userId, delta) -> args.add(new Object[]{current().nextInt(shards), delta, userId}));
+        jdbcTemplate.batchUpdate(dialect.isPostgreSQL() ? UPSERT_SHARD : MERGE_SHARD, args);
+    }
+
+    /**
+     * move os deltas dos shards para o total dos usuarios em uma transacao, cada
+     * usuario trava a sua linha de total uma vez por ciclo. Roda mesmo com os shards
+     * desligados para compactar o que ficou de uma configuracao anterior
+     */
+    @Scheduled(fixedDelayString = "${users.usage.compact-millis:5000}")
+    public synchronized void compact() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Object[]> shardArgs = new ArrayList<>();
+                Map<Long, Long> totals = new LinkedHashMap<>();
+                jdbcTemplate.query(SELECT_PENDING_SHARDS, rs -> {
+                    long delta = rs.getLong(3);
+                    shardArgs.add(new Object[]{delta, rs.getLong(1), rs.getInt(2)});
+                    totals.merge(rs.getLong(1), delta, Long::sum);
+                });
+                if (shardArgs.isEmpty())
+                    return;
+
+                jdbcTemplate.batchUpdate(COMPACT_SHARD, shardArgs);
+
+                List<Object[]> totalArgs = new ArrayList<>(totals.size());
+                totals.forEach((userId, delta) -> totalArgs.add(new Object[]{delta, userId}));
+                jdbcTemplate.batchUpdate(UPDATE_USER_TOTAL, totalArgs);
+            });
+        } catch (DataAccessException ex) {
+            log.warn("Falha ao compactar os shards do total de acessos, nova tentativa no proximo ciclo", ex);
+        }
+    }
+}
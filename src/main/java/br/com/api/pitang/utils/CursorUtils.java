@@ -0,0 +1,39 @@
+package br.com.api.pitang.utils;
+
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_FIELDS;
+import br.com.api.pitang.exceptions.ValidationException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Base64;
+import lombok.Value;
+
+/**
+ * token opaco das paginas por cursor: a chave de ordenacao do ultimo item da pagina
+ * (contador, texto e id) em base64, a proxima pagina comeca logo depois dessa chave
+ */
+public class CursorUtils {
+
+    public static String encode(long counter, String text, long id) {
+        String key = counter + ":" + id + ":" + (text != null ? text : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(UTF_8));
+    }
+
+    /**
+     * @throws ValidationException caso o token nao tenha sido gerado pelo encode
+     */
+    public static Cursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), UTF_8).split(":", 3);
+            return new Cursor(Long.parseLong(parts[0]), parts[2], Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            throw new ValidationException(INVALID_FIELDS);
+        }
+    }
+
+    @Value
+    public static class Cursor {
+
+        long counter;
+        String text;
+        long id;
+    }
+}
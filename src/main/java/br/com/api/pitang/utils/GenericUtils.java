@@ -1,28 +1,40 @@
 package br.com.api.pitang.utils;
 
-import br.com.api.pitang.configs.security.UserDetail;
-import br.com.api.pitang.data.models.User;
+import br.com.api.pitang.configs.security.UserPrincipal;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import static java.util.regex.Pattern.CASE_INSENSITIVE;
 import static java.util.regex.Pattern.compile;
 import static org.apache.commons.lang3.StringUtils.isBlank;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.Authentication;
 import static org.springframework.security.core.context.SecurityContextHolder.getContext;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 public class GenericUtils {
 
-    public static String generatePasswordHash(final String password) {
-        BCryptPasswordEncoder bCrypt = new BCryptPasswordEncoder();
-        return bCrypt.encode(password);
+    public static UserPrincipal getUserLogged() {
+        Authentication authentication = getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal)) return null;
+        return (UserPrincipal) authentication.getPrincipal();
     }
 
-    public static User getUserLogged() {
-        Authentication authentication = getContext().getAuthentication();
-        if (authentication == null) return null;
-        UserDetail userDetail = (UserDetail) authentication.getPrincipal();
-        return userDetail.getUser();
+    /**
+     * monta a pagina a partir de uma fatia (sem count) e de um total mantido por contador.
+     * Na ultima fatia o total e exato, nas demais o contador e usado, mas nunca menor
+     * que o que ja se sabe existir. Uma fatia vazia (pagina depois da ultima) nao diz
+     * nada sobre o total, entao o contador e usado como esta
+     */
+    public static <T> Page<T> toPage(Slice<?> slice, List<T> content, Long counter) {
+        long known = slice.getPageable().getOffset() + content.size();
+        long total;
+        if (content.isEmpty())
+            total = counter != null ? counter : known;
+        else
+            total = slice.hasNext() ? Math.max(counter != null ? counter : 0L, known + 1) : known;
+        return new PageImpl<>(content, slice.getPageable(), total);
     }
 
     public static boolean isValidEmail(String email) {
@@ -0,0 +1,152 @@
+-- schema das entidades, equivalente ao que o hibernate criava com ddl-auto=update.
+-- Tudo e criado com "if not exists" para que a migracao tambem rode sobre um banco ja
+-- criado pelo hibernate (baseline na versao 0), completando apenas o que faltar
+
+create sequence if not exists hibernate_sequence start 1 increment 1;
+create sequence if not exists seq_car start 1 increment 1;
+create sequence if not exists seq_refresh_token start 1 increment 1;
+create sequence if not exists seq_user start 1 increment 1;
+
+create table if not exists revinfo (
+    rev int4 not null,
+    revtstmp int8,
+    constraint revinfo_pkey primary key (rev)
+);
+
+create table if not exists users (
+    id int8 not null,
+    birth_date date not null,
+    car_count int8,
+    created_at timestamp not null,
+    email varchar(255) not null,
+    first_name varchar(255) not null,
+    last_login timestamp,
+    last_name varchar(255) not null,
+    login varchar(255) not null,
+    password varchar(255) not null,
+    phone varchar(255) not null,
+    constraint users_pkey primary key (id),
+    constraint uk_6dotkott2kjsp8vw4d0m25fb7 unique (email),
+    constraint uk_ow0gan20590jrb00upg3va2fn unique (login)
+);
+
+alter table users add column if not exists car_count int8;
+
+create table if not exists users_aud (
+    id int8 not null,
+    rev int4 not null,
+    revtype int2,
+    birth_date date,
+    car_count int8,
+    created_at timestamp,
+    email varchar(255),
+    first_name varchar(255),
+    last_login timestamp,
+    last_name varchar(255),
+    login varchar(255),
+    password varchar(255),
+    phone varchar(255),
+    constraint users_aud_pkey primary key (id, rev),
+    constraint fkc4vk4tui2la36415jpgm9leoq foreign key (rev) references revinfo
+);
+
+alter table users_aud add column if not exists car_count int8;
+
+create table if not exists user_usage_counters (
+    total_usage_counter int8,
+    user_id int8 not null,
+    constraint user_usage_counters_pkey primary key (user_id),
+    constraint fknyq0keuk72a8jb7u0rm8pbxiq foreign key (user_id) references users
+);
+
+create table if not exists user_usage_counters_aud (
+    user_id int8 not null,
+    rev int4 not null,
+    total_usage_counter int8,
+    constraint user_usage_counters_aud_pkey primary key (user_id, rev),
+    constraint fkr6ol0wa31v69op63iqxg4ggdh foreign key (user_id, rev) references users_aud
+);
+
+create table if not exists user_usage_counter_shards (
+    shard int4 not null,
+    user_id int8 not null,
+    delta int8 not null,
+    constraint user_usage_counter_shards_pkey primary key (shard, user_id),
+    constraint fka07j43j4htlcftop2b7xj2hj9 foreign key (user_id) references users on delete cascade
+);
+
+create table if not exists cars (
+    id int8 not null,
+    color varchar(255) not null,
+    created_at timestamp not null,
+    license_plate varchar(255) not null,
+    model varchar(255) not null,
+    year int4 not null,
+    user_id int8 not null,
+    constraint cars_pkey primary key (id),
+    constraint uk_dbc9idlyetvssufb2vxicvb87 unique (license_plate),
+    constraint fkqw4c8e6nqrvy3ti1xj8w8wyc9 foreign key (user_id) references users
+);
+
+create index if not exists idx_cars_user_model on cars (user_id, model, id);
+
+create table if not exists cars_aud (
+    id int8 not null,
+    rev int4 not null,
+    revtype int2,
+    color varchar(255),
+    created_at timestamp,
+    license_plate varchar(255),
+    model varchar(255),
+    year int4,
+    user_id int8,
+    constraint cars_aud_pkey primary key (id, rev),
+    constraint fkjsuryppmgpwnj2jbb6h2prtmf foreign key (rev) references revinfo
+);
+
+create table if not exists car_usage_counters (
+    usage_counter int8,
+    car_id int8 not null,
+    constraint car_usage_counters_pkey primary key (car_id),
+    constraint fk52m35mayyoi3oxt2rjud7u4uk foreign key (car_id) references cars
+);
+
+create table if not exists car_usage_counters_aud (
+    car_id int8 not null,
+    rev int4 not null,
+    usage_counter int8,
+    constraint car_usage_counters_aud_pkey primary key (car_id, rev),
+    constraint fk54kl5r5b7y0s06wueoobbj7fa foreign key (car_id, rev) references cars_aud
+);
+
+create table if not exists car_usage_rollups (
+    bucket_start timestamp not null,
+    car_id int8 not null,
+    usage_count int8 not null,
+    constraint car_usage_rollups_pkey primary key (bucket_start, car_id),
+    constraint fk1mstjjlcqmpdxib8k2va3m5pa foreign key (car_id) references cars on delete cascade
+);
+
+create table if not exists refresh_tokens (
+    id int8 not null,
+    created_at timestamp not null,
+    expires_at timestamp not null,
+    token_hash varchar(64) not null,
+    user_id int8 not null,
+    constraint refresh_tokens_pkey primary key (id),
+    constraint uk_o2mlirhldriil2y7krapq4frt unique (token_hash),
+    constraint fk1lih5y2npsf8u5o3vhdb9y0os foreign key (user_id) references users on delete cascade
+);
+
+create table if not exists revoked_tokens (
+    jti varchar(36) not null,
+    expires_at timestamp not null,
+    revoked_at timestamp not null,
+    constraint revoked_tokens_pkey primary key (jti)
+);
+
+create table if not exists app_counters (
+    name varchar(255) not null,
+    counter_value int8 not null,
+    constraint app_counters_pkey primary key (name)
+);
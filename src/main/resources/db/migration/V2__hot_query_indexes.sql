@@ -0,0 +1,9 @@
+-- deleteInactiveUsers filtra por coalesce(last_login, created_at), que o hibernate
+-- gera exatamente nessa forma; sem o indice de expressao o job le a tabela inteira
+create index if not exists idx_users_inactive on users ((coalesce(last_login, created_at)));
+
+-- ao remover usuarios o banco busca pelo user_id as linhas que referenciam cada um
+-- (refresh tokens e shards sao removidos em cascata). A chave primaria dos shards
+-- comeca pelo shard e nao atende essa busca
+create index if not exists idx_refresh_tokens_user on refresh_tokens (user_id);
+create index if not exists idx_user_usage_counter_shards_user on user_usage_counter_shards (user_id);
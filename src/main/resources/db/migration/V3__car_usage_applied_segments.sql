@@ -0,0 +1,7 @@
+-- segmentos do journal de uso dos carros ja aplicados, evita somar duas vezes um
+-- segmento que nao pode ser removido do disco depois do commit
+create table if not exists car_usage_applied_segments (
+    segment_id varchar(36) not null,
+    applied_at timestamp not null,
+    constraint car_usage_applied_segments_pkey primary key (segment_id)
+);
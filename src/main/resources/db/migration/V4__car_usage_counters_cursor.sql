@@ -0,0 +1,18 @@
+-- a paginacao por cursor dos carros filtra pelo dono e ordena por (usage_counter desc,
+-- model, id). Com o dono e o modelo copiados na linha do contador um unico indice atende
+-- o filtro e a ordem, e cada pagina le apenas pageSize linhas em vez de todos os carros
+-- do usuario
+alter table car_usage_counters add column if not exists user_id int8;
+alter table car_usage_counters add column if not exists model varchar(255);
+
+update car_usage_counters u set user_id = c.user_id, model = c.model
+from cars c where c.id = u.car_id and (u.user_id is null or u.model is null);
+
+update car_usage_counters set usage_counter = 0 where usage_counter is null;
+
+alter table car_usage_counters alter column user_id set not null;
+alter table car_usage_counters alter column model set not null;
+alter table car_usage_counters alter column usage_counter set not null;
+
+create index if not exists idx_car_usage_counters_cursor
+    on car_usage_counters (user_id, usage_counter desc, model, car_id);
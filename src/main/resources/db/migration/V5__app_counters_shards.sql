@@ -0,0 +1,12 @@
+-- o total de usuarios era uma unica linha de app_counters atualizada em todo cadastro,
+-- serializando cadastros concorrentes. Passa a ser somado em 16 linhas (shards) criadas
+-- aqui; o valor atual fica no shard 0
+alter table app_counters add column if not exists shard int4 not null default 0;
+alter table app_counters alter column shard drop default;
+alter table app_counters drop constraint if exists app_counters_pkey;
+alter table app_counters add constraint app_counters_pkey primary key (name, shard);
+
+insert into app_counters (name, shard, counter_value)
+select 'users', s.shard, case when s.shard = 0 then (select count(*) from users) else 0 end
+from generate_series(0, 15) as s(shard)
+where not exists (select 1 from app_counters a where a.name = 'users' and a.shard = s.shard);
@@ -0,0 +1,35 @@
+-- prepara as tabelas estreitas dos contadores, antes feito a cada inicializacao por um
+-- componente da api. As entidades leem os contadores com inner join, entao todo carro e
+-- usuario precisa da sua linha de contador. Em bancos criados antes da separacao dos
+-- contadores o valor e copiado das colunas antigas cars.usage_counter e
+-- users.total_usage_counter
+do $$
+declare
+    car_counter text := '0';
+    user_counter text := 'cast(null as bigint)';
+begin
+    if exists (select 1 from information_schema.columns
+               where table_schema = current_schema() and table_name = 'cars' and column_name = 'usage_counter') then
+        car_counter := 'coalesce(c.usage_counter, 0)';
+    end if;
+    if exists (select 1 from information_schema.columns
+               where table_schema = current_schema() and table_name = 'users' and column_name = 'total_usage_counter') then
+        user_counter := 'u.total_usage_counter';
+    end if;
+
+    execute format('insert into car_usage_counters (car_id, user_id, model, usage_counter) '
+                       || 'select c.id, c.user_id, c.model, %s from cars c '
+                       || 'where not exists (select 1 from car_usage_counters t where t.car_id = c.id)', car_counter);
+    execute format('insert into user_usage_counters (user_id, total_usage_counter) '
+                       || 'select u.id, %s from users u '
+                       || 'where not exists (select 1 from user_usage_counters t where t.user_id = u.id)', user_counter);
+end $$;
+
+-- quantidade de carros de cada usuario, usada como total das paginas no lugar de um count(*)
+update users set car_count = (select count(*) from cars c where c.user_id = users.id) where car_count is null;
+
+-- reduz o fillfactor das tabelas dos contadores para sobrar espaco na pagina e os
+-- incrementos virarem HOT updates, sem nova entrada de indice a cada acesso
+alter table car_usage_counters set (fillfactor = 70);
+alter table user_usage_counters set (fillfactor = 70);
+alter table user_usage_counter_shards set (fillfactor = 70);
@@ -0,0 +1,7 @@
+-- desfaz o indice e as copias do dono e do modelo criados em V4: com usage_counter em um
+-- indice cada acesso gravava uma nova entrada de indice e nenhum incremento era HOT update.
+-- A paginacao por cursor dos carros volta a usar idx_cars_user_model em cars
+drop index if exists idx_car_usage_counters_cursor;
+
+alter table car_usage_counters drop column if exists user_id;
+alter table car_usage_counters drop column if exists model;
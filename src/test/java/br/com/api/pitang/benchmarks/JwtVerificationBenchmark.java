@@ -0,0 +1,79 @@
+package br.com.api.pitang.benchmarks;
+
+import br.com.api.pitang.configs.security.jwt.JwtTokenVerifier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import static io.jsonwebtoken.Jwts.builder;
+import static io.jsonwebtoken.Jwts.claims;
+import static io.jsonwebtoken.Jwts.parser;
+import static io.jsonwebtoken.SignatureAlgorithm.HS256;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Base64.getEncoder;
+import static java.util.Collections.singletonList;
+import java.util.Date;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * compara a verificacao de token feita pelo jjwt (caminho antigo do JwtTokenProvider)
+ * com o JwtTokenVerifier. Para executar rode o metodo main pela IDE ou
+ * `java -cp <classpath de teste> br.com.api.pitang.benchmarks.JwtVerificationBenchmark`
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "secret";
+
+    private String encodedKey;
+    private String token;
+    private JwtTokenVerifier verifier;
+
+    @Setup
+    public void setUp() {
+        encodedKey = getEncoder().encodeToString(SECRET.getBytes());
+        verifier = new JwtTokenVerifier(SECRET, new ObjectMapper());
+
+        Claims claims = claims().setSubject("ricardo");
+        claims.put("id", 1L);
+        claims.put("roles", singletonList("USER"));
+
+        token = builder().setClaims(claims)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(currentTimeMillis() + 3_600_000L))
+                .signWith(HS256, encodedKey)
+                .compact();
+    }
+
+    @Benchmark
+    public Claims jjwtParser() {
+        return parser().setSigningKey(encodedKey).parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims tokenVerifier() {
+        return verifier.verify(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
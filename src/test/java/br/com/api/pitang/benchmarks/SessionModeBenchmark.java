@@ -0,0 +1,93 @@
+package br.com.api.pitang.benchmarks;
+
+import br.com.api.pitang.configs.security.UserPrincipal;
+import br.com.api.pitang.configs.security.jwt.JwtTokenVerifier;
+import br.com.api.pitang.configs.security.session.OpaqueSessionStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import static io.jsonwebtoken.Jwts.builder;
+import static io.jsonwebtoken.Jwts.claims;
+import static io.jsonwebtoken.SignatureAlgorithm.HS256;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Base64.getEncoder;
+import static java.util.Collections.singletonList;
+import java.util.Date;
+import java.util.List;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import static org.openjdk.jmh.annotations.Mode.AverageTime;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * compara o custo de autenticar uma requisicao no modo jwt (verificacao do token e
+ * montagem do usuario pelas claims, como no modo stateless) com o modo de token opaco
+ * (busca da sessao no OpaqueSessionStore). O parametro sessions define quantas sessoes
+ * ativas existem no store. Rode pelo metodo main, como o JwtVerificationBenchmark
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+@BenchmarkMode(AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class SessionModeBenchmark {
+
+    private static final String SECRET = "secret";
+
+    @Param({"1000", "100000"})
+    private int sessions;
+
+    private String jwt;
+    private String opaqueToken;
+    private JwtTokenVerifier verifier;
+    private OpaqueSessionStore sessionStore;
+
+    @Setup
+    public void setUp() {
+        verifier = new JwtTokenVerifier(SECRET, new ObjectMapper());
+        sessionStore = new OpaqueSessionStore("opaque", 60, "target/benchmark-sessions.bin", new SimpleMeterRegistry());
+
+        Claims claims = claims().setSubject("ricardo");
+        claims.put("id", 1L);
+        claims.put("roles", singletonList("USER"));
+
+        jwt = builder().setClaims(claims)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(currentTimeMillis() + 3_600_000L))
+                .signWith(HS256, getEncoder().encodeToString(SECRET.getBytes()))
+                .compact();
+
+        for (int i = 0; i < sessions; i++)
+            opaqueToken = sessionStore.create(new UserPrincipal((long) i, "user" + i, "USER"));
+    }
+
+    @Benchmark
+    public UserPrincipal jwtMode() {
+        Claims claims = verifier.verify(jwt);
+        List<?> roles = claims.get("roles", List.class);
+        return new UserPrincipal(claims.get("id", Number.class).longValue(), claims.getSubject(), roles.get(0).toString());
+    }
+
+    @Benchmark
+    public UserPrincipal opaqueMode() {
+        return sessionStore.get(opaqueToken);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SessionModeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,145 @@
+package br.com.api.pitang.configs;
+
+import br.com.api.pitang.data.models.AppCounter;
+import br.com.api.pitang.data.models.AppCounterId;
+import br.com.api.pitang.data.models.Car;
+import br.com.api.pitang.data.models.User;
+import static br.com.api.pitang.factory.CarFactory.buildCars;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import br.com.api.pitang.repositories.AppCounterRepository;
+import br.com.api.pitang.repositories.CarRepository;
+import br.com.api.pitang.repositories.UserRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import static org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace.NONE;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * aplica as migracoes (db/migration) em um PostgreSQL embarcado com a configuracao de
+ * producao: o contexto so sobe se o Flyway aplicar V1..Vn e o Hibernate validar as
+ * entidades contra o schema resultante (ddl-auto=validate)
+ */
+@DataJpaTest
+@TestMethodOrder(OrderAnnotation.class)
+@AutoConfigureTestDatabase(replace = NONE)
+@DisplayName("Testes de integracao das migracoes do schema no PostgreSQL")
+public class SchemaMigrationTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private AppCounterRepository appCounterRepository;
+
+    @DynamicPropertySource
+    public static void datasource(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.start();
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    public static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Aplicando todas as migracoes e validando as entidades contra o schema")
+    public void migrateAndValidate() {
+        MigrationInfo[] applied = flyway.info().applied();
+        assertEquals(flyway.info().all().length, applied.length);
+        assertEquals(0, flyway.info().pending().length);
+
+        assertEquals(AppCounter.SHARDS, appCounterRepository.count());
+        assertEquals(0L, appCounterRepository.findValue(AppCounter.USERS));
+        assertTrue(appCounterRepository.findById(new AppCounterId(AppCounter.USERS, AppCounter.SHARDS - 1)).isPresent());
+
+        User user = buildUsers().get(0);
+        user.setId(null);
+        user = userRepository.saveAndFlush(user);
+
+        Car car = buildCars().get(0);
+        car.setId(null);
+        car.setCreatedAt(LocalDateTime.now());
+        car.setUser(user);
+        car.setUsageCounter(null);
+        car = carRepository.saveAndFlush(car);
+
+        assertEquals(0L, car.getUsageCounter());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Migrando um banco criado pelo hibernate antes dos contadores separados")
+    public void migrateLegacySchema() throws Exception {
+        new JdbcTemplate(postgres.getPostgresDatabase()).execute("create database legacy");
+        DataSource dataSource = postgres.getDatabase("postgres", "legacy");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("create sequence seq_user start 1 increment 1");
+        jdbcTemplate.execute("create sequence seq_car start 1 increment 1");
+        jdbcTemplate.execute("create table users (id int8 not null, birth_date date not null, created_at timestamp not null, "
+                + "email varchar(255) not null unique, first_name varchar(255) not null, last_login timestamp, "
+                + "last_name varchar(255) not null, login varchar(255) not null unique, password varchar(255) not null, "
+                + "phone varchar(255) not null, total_usage_counter int8, primary key (id))");
+        jdbcTemplate.execute("create table cars (id int8 not null, color varchar(255) not null, created_at timestamp not null, "
+                + "license_plate varchar(255) not null unique, model varchar(255) not null, usage_counter int8, "
+                + "year int4 not null, user_id int8 not null references users, primary key (id))");
+        jdbcTemplate.update("insert into users values (1, '1990-01-01', now(), 'a@gmail.com', 'A', null, 'B', 'a', 'x', '81', 12)");
+        jdbcTemplate.update("insert into cars values (1, 'Preto', now(), 'PLK-6721', 'Corolla', 7, 2020, 1)");
+        jdbcTemplate.update("insert into cars values (2, 'Azul', now(), 'KJP-8872', 'Fusca', 5, 1986, 1)");
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+
+        assertEquals(7L, jdbcTemplate.queryForObject(
+                "select usage_counter from car_usage_counters where car_id = 1", Long.class));
+        assertEquals(5L, jdbcTemplate.queryForObject(
+                "select usage_counter from car_usage_counters where car_id = 2", Long.class));
+        assertEquals(12L, jdbcTemplate.queryForObject(
+                "select total_usage_counter from user_usage_counters where user_id = 1", Long.class));
+        assertEquals(2L, jdbcTemplate.queryForObject("select car_count from users where id = 1", Long.class));
+        assertEquals(1L, jdbcTemplate.queryForObject(
+                "select sum(counter_value) from app_counters where name = 'users'", Long.class));
+
+        String options = jdbcTemplate.queryForObject(
+                "select array_to_string(reloptions, ',') from pg_class where relname = 'car_usage_counters'", String.class);
+        assertNotNull(options);
+        assertTrue(options.contains("fillfactor=70"));
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "select count(*) from pg_indexes where tablename = 'car_usage_counters' and indexname <> 'car_usage_counters_pkey'",
+                Long.class));
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.api.pitang.configs.security;
+
+import static br.com.api.pitang.configs.security.AdaptiveBCryptPasswordEncoder.calibrate;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+@DisplayName("Testes unitarios do BCrypt com custo adaptativo")
+public class AdaptiveBCryptPasswordEncoderTest {
+
+    @Test
+    @DisplayName("Identificando hashes com custo fora da faixa aceita")
+    public void upgradeEncoding() {
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(6, 1, 4, 8);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("123456")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("123456")));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("123456")));
+        assertFalse(encoder.upgradeEncoding("$2a$07$AQe5K87Y5CysW4un0eDi5OAncw.zUYqlfsQw7aSEMvtRMxYKM0EwO"));
+        assertTrue(encoder.upgradeEncoding("$2a$10$AQe5K87Y5CysW4un0eDi5OAncw.zUYqlfsQw7aSEMvtRMxYKM0EwO"));
+        assertFalse(encoder.upgradeEncoding("texto-sem-bcrypt"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    @DisplayName("Validando senha com hash de custo diferente do calibrado")
+    public void matchesAnyCost() {
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(6, 1, 4, 8);
+
+        assertTrue(encoder.matches("123456", new BCryptPasswordEncoder(4).encode("123456")));
+        assertFalse(encoder.matches("654321", new BCryptPasswordEncoder(4).encode("123456")));
+    }
+
+    @Test
+    @DisplayName("Calibrando o custo respeitando os limites configurados")
+    public void calibrateWithinBounds() {
+        int strength = calibrate(50, 5, 7);
+
+        assertTrue(strength >= 5 && strength <= 7);
+        assertTrue(calibrate(1, 9, 12) == 9);
+        assertTrue(calibrate(1_000_000, 4, 6) == 6);
+    }
+}
@@ -0,0 +1,76 @@
+package br.com.api.pitang.configs.security;
+
+import static br.com.api.pitang.constants.MessagesConstants.SERVICE_UNAVAILABLE;
+import br.com.api.pitang.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+@DisplayName("Testes unitarios do pool de hash de senhas")
+public class BoundedPasswordEncoderTest {
+
+    @Test
+    @DisplayName("Gerando e validando hash de senha pelo pool")
+    public void encodeAndMatches() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 1, 5000, registry);
+
+        String hash = encoder.encode("123456");
+
+        assertTrue(encoder.matches("123456", hash));
+        assertFalse(encoder.matches("654321", hash));
+        assertEquals(3, registry.timer("security.password.hash").count());
+        encoder.shutdown();
+    }
+
+    @Test
+    @DisplayName("Erro ao gerar hash com o pool e a fila cheios")
+    public void rejectWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, 5000, registry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("running"));
+        assertTrue(started.await(5, SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("queued"));
+        while (encoder.getQueueSize() == 0)
+            Thread.sleep(5);
+
+        ServiceUnavailableException ex = assertThrows(ServiceUnavailableException.class, () -> encoder.encode("rejected"));
+        assertEquals(SERVICE_UNAVAILABLE, ex.getMessage());
+        assertEquals(1, registry.counter("security.password.hash.rejected").count());
+
+        release.countDown();
+        assertEquals("running", running.get(5, SECONDS));
+        assertEquals("queued", queued.get(5, SECONDS));
+        encoder.shutdown();
+    }
+}
@@ -0,0 +1,103 @@
+package br.com.api.pitang.configs.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testes unitarios do contador de tentativas de login")
+public class LoginAttemptTrackerTest {
+
+    @Test
+    @DisplayName("Bloqueando o login apos atingir o limite de falhas e liberando apos sucesso")
+    public void blockByLogin() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1024, 300, 3, 100, registry);
+        String other = otherStripe(tracker, "ricardo", "marcos");
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(tracker.isBlocked("ricardo", "10.0.0.1"));
+            tracker.recordFailure("Ricardo", "10.0.0.1");
+        }
+
+        assertTrue(tracker.isBlocked("ricardo", "10.0.0.2"));
+        assertFalse(tracker.isBlocked(other, "10.0.0.1"));
+        assertEquals(1, registry.counter("security.login.attempts.rejected").count());
+
+        tracker.recordSuccess("ricardo");
+        assertFalse(tracker.isBlocked("ricardo", "10.0.0.1"));
+    }
+
+    @Test
+    @DisplayName("Bloqueando o ip apos falhas em logins diferentes")
+    public void blockByIp() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1024, 300, 100, 5, new SimpleMeterRegistry());
+        String otherIp = otherStripe(tracker, "10.0.0.1", "10.0.0.");
+
+        for (int i = 0; i < 5; i++)
+            tracker.recordFailure("login" + i, "10.0.0.1");
+
+        assertTrue(tracker.isBlocked("outro", "10.0.0.1"));
+        assertFalse(tracker.isBlocked("outro", otherIp));
+        assertFalse(tracker.isBlocked("outro", null));
+    }
+
+    @Test
+    @DisplayName("Liberando o login apos a janela de tempo passar")
+    public void windowExpires() throws InterruptedException {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1024, 1, 2, 100, new SimpleMeterRegistry());
+
+        tracker.recordFailure("ricardo", null);
+        tracker.recordFailure("ricardo", null);
+        assertTrue(tracker.isBlocked("ricardo", null));
+
+        Thread.sleep(2100);
+        assertFalse(tracker.isBlocked("ricardo", null));
+    }
+
+    @Test
+    @DisplayName("Espalhando ips sequenciais pelas posicoes")
+    public void spreadSequentialKeys() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(1024, 300, 100, 5, new SimpleMeterRegistry());
+        Set<Integer> stripes = new HashSet<>();
+        for (int i = 0; i < 256; i++)
+            stripes.add(tracker.stripe("10.0.0." + i));
+
+        assertTrue(stripes.size() > 190);
+    }
+
+    /**
+     * primeira chave com o prefixo que cai em uma posicao diferente da chave informada,
+     * assim o teste nao depende da semente aleatoria
+     */
+    private String otherStripe(LoginAttemptTracker tracker, String key, String prefix) {
+        String other = prefix + 2;
+        for (int i = 3; other.equals(key) || tracker.stripe(other) == tracker.stripe(key); i++)
+            other = prefix + i;
+        return other;
+    }
+
+    @Test
+    @DisplayName("Mantendo as falhas de um login apos sucesso de outro login na mesma posicao")
+    public void successKeepsOtherLoginFailures() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(2, 300, 2, 100, new SimpleMeterRegistry());
+        String other = "marcos";
+        for (int i = 0; tracker.stripe(other) != tracker.stripe("ricardo"); i++)
+            other = "marcos" + i;
+
+        tracker.recordFailure("ricardo", null);
+        tracker.recordFailure("ricardo", null);
+        assertTrue(tracker.isBlocked("ricardo", null));
+
+        tracker.recordSuccess(other);
+        assertTrue(tracker.isBlocked("ricardo", null));
+
+        tracker.recordFailure(other, null);
+        tracker.recordSuccess("ricardo");
+        assertTrue(tracker.isBlocked(other, null));
+    }
+}
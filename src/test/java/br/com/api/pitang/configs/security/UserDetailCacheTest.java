@@ -0,0 +1,70 @@
+package br.com.api.pitang.configs.security;
+
+import br.com.api.pitang.data.models.User;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testes unitarios do cache de usuarios autenticados")
+public class UserDetailCacheTest {
+
+    @Test
+    @DisplayName("Guardando copia do usuario sem os carros e contando acertos")
+    public void putAndGet() {
+        UserDetailCache cache = new UserDetailCache(60, 100, new SimpleMeterRegistry());
+        User user = buildUsers().get(4);
+
+        assertNull(cache.get("mendes"));
+        cache.put("mendes", user, cache.generation());
+
+        User cached = cache.get("mendes");
+        assertNotNull(cached);
+        assertEquals(user.getId(), cached.getId());
+        assertEquals(user.getPassword(), cached.getPassword());
+        assertNull(cached.getCars());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    @DisplayName("Removendo o usuario do cache ao invalidar pelo id")
+    public void invalidate() {
+        UserDetailCache cache = new UserDetailCache(60, 100, new SimpleMeterRegistry());
+        cache.put("ricardo", buildUsers().get(0), cache.generation());
+        cache.put("mendes", buildUsers().get(4), cache.generation());
+
+        cache.invalidate(1L);
+
+        assertNull(cache.get("ricardo"));
+        assertNotNull(cache.get("mendes"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Descartando usuario lido do banco antes de uma invalidacao")
+    public void stalePutIsDiscarded() {
+        UserDetailCache cache = new UserDetailCache(60, 100, new SimpleMeterRegistry());
+        long generation = cache.generation();
+
+        cache.invalidate(1L);
+        cache.put("ricardo", buildUsers().get(0), generation);
+
+        assertNull(cache.get("ricardo"));
+    }
+
+    @Test
+    @DisplayName("Expirando o usuario apos o ttl")
+    public void expires() throws InterruptedException {
+        UserDetailCache cache = new UserDetailCache(0, 100, new SimpleMeterRegistry());
+        cache.put("ricardo", buildUsers().get(0), cache.generation());
+
+        Thread.sleep(5);
+        assertNull(cache.get("ricardo"));
+    }
+}
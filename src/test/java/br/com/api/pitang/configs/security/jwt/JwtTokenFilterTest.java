@@ -0,0 +1,117 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_TOKEN;
+import br.com.api.pitang.configs.security.UserDetailCache;
+import br.com.api.pitang.configs.security.UserPrincipal;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import br.com.api.pitang.data.models.User;
+import br.com.api.pitang.repositories.UserRepository;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import static org.springframework.security.core.context.SecurityContextHolder.getContext;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@TestInstance(PER_CLASS)
+@DisplayName("Testes unitarios do filtro de token")
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class JwtTokenFilterTest {
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDetailCache userDetailCache;
+
+    private JwtTokenFilter filter;
+
+    private User user;
+
+    @BeforeAll
+    public void setUp() {
+        user = buildUsers().get(3);
+        user.setId(null);
+        user.setCreatedAt(LocalDateTime.now());
+        user = userRepository.save(user);
+        userDetailCache.clear();
+        filter = new JwtTokenFilter(tokenProvider, "/api/signin", "/api/users/**");
+    }
+
+    @BeforeEach
+    @AfterEach
+    public void clearContext() {
+        getContext().setAuthentication(null);
+    }
+
+    private MockHttpServletRequest request(String uri, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setServletPath(uri);
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    @Test
+    @DisplayName("Ignorando o token nas rotas publicas")
+    public void publicPathSkipsToken() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("/api/users/1", "token-invalido"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertNull(getContext().getAuthentication());
+    }
+
+    @Test
+    @DisplayName("Respondendo 401 sem seguir a cadeia de filtros para token invalido")
+    public void invalidTokenReturns401() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("/api/cars", "token-invalido"), response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(401, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        assertTrue(response.getContentAsString().contains(INVALID_TOKEN));
+        assertTrue(response.getContentAsString().contains("\"errorCode\":401"));
+    }
+
+    @Test
+    @DisplayName("Autenticando a requisicao com token valido")
+    public void validTokenAuthenticates() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("/api/cars", tokenProvider.createToken(user)), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        UserPrincipal principal = (UserPrincipal) getContext().getAuthentication().getPrincipal();
+        assertEquals("marcos", principal.getLogin());
+        assertEquals(user.getId(), principal.getId());
+        assertEquals("USER", principal.getAuthority());
+    }
+
+    @AfterAll
+    public void deleteUser() {
+        userRepository.deleteById(user.getId());
+    }
+}
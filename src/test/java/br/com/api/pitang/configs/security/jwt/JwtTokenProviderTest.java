@@ -0,0 +1,156 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_TOKEN;
+import br.com.api.pitang.configs.security.UserPrincipal;
+import br.com.api.pitang.configs.security.session.OpaqueSessionStore;
+import br.com.api.pitang.exceptions.AuthenticationJwtException;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import static br.com.api.pitang.utils.GenericUtils.getUserLogged;
+import io.jsonwebtoken.Claims;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import org.springframework.security.core.Authentication;
+import static org.springframework.security.core.context.SecurityContextHolder.getContext;
+import org.springframework.test.context.ActiveProfiles;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+@ActiveProfiles("test")
+@TestInstance(PER_CLASS)
+@TestMethodOrder(OrderAnnotation.class)
+@DisplayName("Testes unitarios do provedor de token")
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class JwtTokenProviderTest {
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private JwtClaimsCache claimsCache;
+
+    @Autowired
+    private JwtRevocationList revocationList;
+
+    @Autowired
+    private OpaqueSessionStore sessionStore;
+
+    @BeforeEach
+    public void clearCache() {
+        claimsCache.clear();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Validando token e reaproveitando as claims do cache")
+    public void validTokenUsesCache() {
+        String token = tokenProvider.createToken(buildUsers().get(0));
+        double hits = claimsCache.hitCount();
+
+        Claims claims = tokenProvider.getValidClaims(token);
+
+        assertEquals("ricardo", claims.getSubject());
+        assertEquals(1, claimsCache.size());
+        assertEquals(hits, claimsCache.hitCount());
+
+        assertSame(claims, tokenProvider.getValidClaims(token));
+        assertTrue(tokenProvider.isValidToken(token));
+        assertEquals(hits + 2, claimsCache.hitCount());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Erro ao validar token com assinatura invalida")
+    public void invalidToken() {
+        String token = tokenProvider.createToken(buildUsers().get(0));
+        String tampered = token.substring(0, token.length() - 2) + "xx";
+
+        AuthenticationJwtException ex = assertThrows(AuthenticationJwtException.class,
+                () -> tokenProvider.getValidClaims(tampered));
+
+        assertEquals(INVALID_TOKEN, ex.getMessage());
+        assertEquals(0, claimsCache.size());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Montando usuario autenticado apenas com as claims do token")
+    public void statelessAuthentication() {
+        setField(tokenProvider, "stateless", true);
+        try {
+            String token = tokenProvider.createToken(buildUsers().get(4));
+
+            Authentication auth = tokenProvider.getAuthentication(token);
+            getContext().setAuthentication(auth);
+
+            UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+            assertEquals("mendes", principal.getLogin());
+            assertEquals("USER", auth.getAuthorities().iterator().next().getAuthority());
+            assertEquals(5L, getUserLogged().getId());
+            assertEquals("mendes", getUserLogged().getLogin());
+        } finally {
+            setField(tokenProvider, "stateless", false);
+            getContext().setAuthentication(null);
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Erro ao validar token revogado mesmo com as claims no cache")
+    public void revokedToken() {
+        String token = tokenProvider.createToken(buildUsers().get(0));
+        String other = tokenProvider.createToken(buildUsers().get(0));
+        Claims claims = tokenProvider.getValidClaims(token);
+
+        assertNotEquals(claims.getId(), tokenProvider.getValidClaims(other).getId());
+
+        revocationList.revoke(claims);
+
+        AuthenticationJwtException ex = assertThrows(AuthenticationJwtException.class,
+                () -> tokenProvider.getValidClaims(token));
+        assertEquals(INVALID_TOKEN, ex.getMessage());
+        assertTrue(tokenProvider.isValidToken(other));
+
+        revocationList.evictExpired();
+        assertThrows(AuthenticationJwtException.class, () -> tokenProvider.getValidClaims(token));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Autenticando e revogando token opaco no modo de sessao em memoria")
+    public void opaqueSessionMode() {
+        setField(sessionStore, "enabled", true);
+        try {
+            String token = tokenProvider.createToken(buildUsers().get(4));
+
+            assertEquals(43, token.length());
+            Authentication auth = tokenProvider.resolveAuthentication(token);
+            UserPrincipal principal = (UserPrincipal) auth.getPrincipal();
+            assertEquals(5L, principal.getId());
+            assertEquals("mendes", principal.getLogin());
+            assertEquals("USER", auth.getAuthorities().iterator().next().getAuthority());
+
+            tokenProvider.revokeToken(token);
+
+            assertNull(tokenProvider.resolveAuthentication(token));
+            AuthenticationJwtException ex = assertThrows(AuthenticationJwtException.class,
+                    () -> tokenProvider.getAuthentication(token));
+            assertEquals(INVALID_TOKEN, ex.getMessage());
+        } finally {
+            setField(sessionStore, "enabled", false);
+        }
+    }
+}
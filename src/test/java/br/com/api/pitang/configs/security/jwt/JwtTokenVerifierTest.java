@@ -0,0 +1,74 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import static io.jsonwebtoken.Jwts.builder;
+import static io.jsonwebtoken.SignatureAlgorithm.HS256;
+import static io.jsonwebtoken.SignatureAlgorithm.HS512;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Base64.getEncoder;
+import static java.util.Base64.getUrlEncoder;
+import java.util.Date;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testes unitarios do verificador de token HS256")
+public class JwtTokenVerifierTest {
+
+    private final JwtTokenVerifier verifier = new JwtTokenVerifier("secret", new ObjectMapper());
+
+    private JwtBuilder token(long expiresInMillis) {
+        return builder().setSubject("ricardo")
+                .claim("id", 1L)
+                .setExpiration(new Date(currentTimeMillis() + expiresInMillis));
+    }
+
+    private String key(String secret) {
+        return getEncoder().encodeToString(secret.getBytes());
+    }
+
+    @Test
+    @DisplayName("Verificando token valido gerado pelo jjwt")
+    public void validToken() {
+        String token = token(60_000L).signWith(HS256, key("secret")).compact();
+
+        Claims claims = verifier.verify(token);
+
+        assertNotNull(claims);
+        assertEquals("ricardo", claims.getSubject());
+        assertEquals(1L, claims.get("id", Number.class).longValue());
+    }
+
+    @Test
+    @DisplayName("Verificando token com cabecalho diferente do padrao do jjwt")
+    public void validTokenWithTypHeader() {
+        String token = token(60_000L).setHeaderParam("typ", "JWT").signWith(HS256, key("secret")).compact();
+
+        assertNotNull(verifier.verify(token));
+    }
+
+    @Test
+    @DisplayName("Rejeitando token expirado, com outra chave ou outro algoritmo")
+    public void invalidTokens() {
+        assertNull(verifier.verify(token(-1_000L).signWith(HS256, key("secret")).compact()));
+        assertNull(verifier.verify(token(60_000L).signWith(HS256, key("other")).compact()));
+        assertNull(verifier.verify(token(60_000L).signWith(HS512, key("secret")).compact()));
+        assertNull(verifier.verify("eyJhbGciOiJIUzI1NiJ9.e30"));
+        assertNull(verifier.verify("not-a-token"));
+    }
+
+    @Test
+    @DisplayName("Rejeitando token sem assinatura (alg none)")
+    public void unsignedToken() {
+        String header = getUrlEncoder().withoutPadding().encodeToString("{\"alg\":\"none\"}".getBytes(US_ASCII));
+        String signed = token(60_000L).signWith(HS256, key("secret")).compact();
+        String forged = header + signed.substring(signed.indexOf('.'));
+
+        assertNull(verifier.verify(forged));
+    }
+}
@@ -0,0 +1,33 @@
+package br.com.api.pitang.configs.security.jwt;
+
+import static java.util.UUID.randomUUID;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Testes unitarios do bloom filter de tokens revogados")
+public class RevokedTokenBloomFilterTest {
+
+    @Test
+    @DisplayName("Encontrando todos os jti adicionados e poucos falsos positivos")
+    public void mightContain() {
+        RevokedTokenBloomFilter filter = new RevokedTokenBloomFilter(1000, 0.01);
+        List<String> revoked = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String jti = randomUUID().toString();
+            revoked.add(jti);
+            filter.put(jti);
+        }
+
+        assertTrue(revoked.stream().allMatch(filter::mightContain));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++)
+            if (filter.mightContain(randomUUID().toString()))
+                falsePositives++;
+
+        assertTrue(falsePositives < 300, "falsos positivos: " + falsePositives);
+    }
+}
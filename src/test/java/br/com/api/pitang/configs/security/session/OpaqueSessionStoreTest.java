@@ -0,0 +1,130 @@
+package br.com.api.pitang.configs.security.session;
+
+import br.com.api.pitang.configs.security.UserPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.attribute.PosixFilePermissions.fromString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testes unitarios do store de sessoes opacas")
+public class OpaqueSessionStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OpaqueSessionStore store(long ttlMinutes) {
+        return new OpaqueSessionStore("opaque", ttlMinutes, tempDir.resolve("sessions.bin").toString(),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Criando, buscando e revogando sessoes")
+    public void createGetRevoke() {
+        OpaqueSessionStore store = store(15);
+        UserPrincipal principal = new UserPrincipal(1L, "ricardo", "USER");
+
+        String token = store.create(principal);
+        String other = store.create(principal);
+
+        assertNotEquals(token, other);
+        assertEquals(principal, store.get(token));
+        assertNull(store.get("token-inexistente"));
+
+        store.revoke(token);
+        assertNull(store.get(token));
+        assertEquals(principal, store.get(other));
+    }
+
+    @Test
+    @DisplayName("Recusando sessao expirada")
+    public void expiredSession() {
+        OpaqueSessionStore store = store(0);
+
+        String token = store.create(new UserPrincipal(1L, "ricardo", "USER"));
+
+        assertNull(store.get(token));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    @DisplayName("Recuperando as sessoes do snapshot apos um restart")
+    public void snapshotSurvivesRestart() {
+        OpaqueSessionStore store = store(15);
+        String token = store.create(new UserPrincipal(5L, "mendes", "USER"));
+        String revoked = store.create(new UserPrincipal(1L, "ricardo", "USER"));
+        store.revoke(revoked);
+        store.shutdown();
+
+        OpaqueSessionStore restarted = store(15);
+        restarted.load();
+
+        assertEquals(1, restarted.size());
+        assertEquals(new UserPrincipal(5L, "mendes", "USER"), restarted.get(token));
+        assertNull(restarted.get(revoked));
+    }
+
+    @Test
+    @DisplayName("Gravando no snapshot apenas o hash dos tokens")
+    public void snapshotStoresOnlyDigests() throws IOException {
+        OpaqueSessionStore store = store(15);
+        String token = store.create(new UserPrincipal(5L, "mendes", "USER"));
+        store.shutdown();
+
+        String content = new String(Files.readAllBytes(tempDir.resolve("sessions.bin")), ISO_8859_1);
+        assertFalse(content.contains(token));
+    }
+
+    @Test
+    @DisplayName("Ignorando snapshot com permissao para grupo e outros")
+    public void refuseUntrustedSnapshot() throws IOException {
+        OpaqueSessionStore store = store(15);
+        String token = store.create(new UserPrincipal(5L, "mendes", "USER"));
+        store.shutdown();
+        Files.setPosixFilePermissions(tempDir.resolve("sessions.bin"), fromString("rw-rw-rw-"));
+
+        OpaqueSessionStore restarted = store(15);
+        restarted.load();
+
+        assertEquals(0, restarted.size());
+        assertNull(restarted.get(token));
+    }
+
+    @Test
+    @DisplayName("Ignorando snapshot forjado em formato antigo com tokens em texto")
+    public void refuseLegacySnapshot() throws IOException {
+        Path file = tempDir.resolve("sessions.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeUTF("token-forjado");
+            out.writeLong(1L);
+            out.writeUTF("ricardo");
+            out.writeUTF("USER");
+            out.writeLong(Long.MAX_VALUE);
+        }
+        Files.setPosixFilePermissions(file, fromString("rw-------"));
+
+        OpaqueSessionStore store = store(15);
+        store.load();
+
+        assertNull(store.get("token-forjado"));
+    }
+
+    @Test
+    @DisplayName("Exigindo o arquivo de snapshot no modo opaco")
+    public void requireSnapshotFile() {
+        assertThrows(IllegalStateException.class,
+                () -> new OpaqueSessionStore("opaque", 15, "", new SimpleMeterRegistry()));
+    }
+}
@@ -1,18 +1,29 @@
 package br.com.api.pitang.controllers;
 
+import br.com.api.pitang.configs.security.UserDetailCache;
+import br.com.api.pitang.configs.security.jwt.JwtTokenProvider;
 import static br.com.api.pitang.constants.MessagesConstants.INVALID_LOGIN;
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_REFRESH_TOKEN;
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_TOKEN;
+import br.com.api.pitang.exceptions.AuthenticationJwtException;
 import br.com.api.pitang.data.dtos.AuthDTO;
 import static br.com.api.pitang.data.dtos.AuthDTO.builder;
+import br.com.api.pitang.data.dtos.RefreshTokenDTO;
+import br.com.api.pitang.data.dtos.UserDTO;
 import br.com.api.pitang.data.models.User;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
 import br.com.api.pitang.repositories.UserRepository;
+import br.com.api.pitang.services.LastLoginBuffer;
 import br.com.api.pitang.services.UserService;
 import com.google.gson.Gson;
+import com.jayway.jsonpath.JsonPath;
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.AfterAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -49,19 +60,37 @@ public class AuthControllerTest {
     @Autowired
     private AuthController controller;
 
+    @Autowired
+    private RefreshTokenController refreshTokenController;
+
+    @Autowired
+    private LogoutController logoutController;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private LastLoginBuffer lastLoginBuffer;
+
+    @Autowired
+    private UserDetailCache userDetailCache;
+
+    private String refreshToken;
+
     @BeforeAll
     @DisplayName("Criando um usario no banco para ser usado no login")
     public void setUp() {
         User user = buildUsers().get(3);
         user.setCreatedAt(LocalDateTime.now());
         userRepository.save(user);
-        mockMvc = standaloneSetup(controller).build();
+        userDetailCache.clear();
+        mockMvc = standaloneSetup(controller, refreshTokenController, logoutController).build();
     }
 
     @Test
@@ -106,6 +135,7 @@ public class AuthControllerTest {
                 .andExpect(jsonPath("$.name").value("Marcos"))
                 .andExpect(jsonPath("$.token").isNotEmpty());
 
+        lastLoginBuffer.flush();
         user = userService.findByLogin("marcos");
         assertNotNull(user.getLastLogin());
     }
@@ -119,13 +149,134 @@ public class AuthControllerTest {
                 .password("18855698")
                 .build();
 
-        mockMvc.
+        String response = mockMvc.
                 perform(post("/api/signin")
                         .contentType(APPLICATION_JSON)
                         .content(gson.toJson(dto)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.name").value("Marcos"))
-                .andExpect(jsonPath("$.token").isNotEmpty());
+                .andExpect(jsonPath("$.token").isNotEmpty())
+                .andExpect(jsonPath("$.refreshToken").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        refreshToken = JsonPath.read(response, "$.refreshToken");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Renovando o token com o refresh token recebido no login")
+    public void refreshToken() throws Exception {
+        String response = mockMvc.
+                perform(post("/api/refresh")
+                        .contentType(APPLICATION_JSON)
+                        .content(gson.toJson(new RefreshTokenDTO(refreshToken))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Marcos"))
+                .andExpect(jsonPath("$.token").isNotEmpty())
+                .andExpect(jsonPath("$.refreshToken").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        assertNotEquals(refreshToken, JsonPath.read(response, "$.refreshToken"));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Erro ao reutilizar um refresh token ja renovado")
+    public void errorReuseRefreshToken() {
+        try {
+            mockMvc.
+                    perform(post("/api/refresh")
+                            .contentType(APPLICATION_JSON)
+                            .content(gson.toJson(new RefreshTokenDTO(refreshToken))))
+                    .andExpect(status().isUnauthorized());
+        } catch (Exception ex) {
+            assertEquals(NestedServletException.class, ex.getClass());
+            assertTrue(ex.getMessage().contains(INVALID_REFRESH_TOKEN));
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Fazendo logout e revogando o token e o refresh token da sessao")
+    public void logout() throws Exception {
+        AuthDTO dto = builder()
+                .login("marcos")
+                .password("18855698")
+                .build();
+
+        String response = mockMvc.
+                perform(post("/api/signin")
+                        .contentType(APPLICATION_JSON)
+                        .content(gson.toJson(dto)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String token = JsonPath.read(response, "$.token");
+        String sessionRefreshToken = JsonPath.read(response, "$.refreshToken");
+
+        mockMvc.
+                perform(post("/api/logout")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(APPLICATION_JSON)
+                        .content(gson.toJson(new RefreshTokenDTO(sessionRefreshToken))))
+                .andExpect(status().isNoContent());
+
+        AuthenticationJwtException ex = assertThrows(AuthenticationJwtException.class,
+                () -> tokenProvider.getValidClaims(token));
+        assertEquals(INVALID_TOKEN, ex.getMessage());
+
+        try {
+            mockMvc.
+                    perform(post("/api/refresh")
+                            .contentType(APPLICATION_JSON)
+                            .content(gson.toJson(new RefreshTokenDTO(sessionRefreshToken))))
+                    .andExpect(status().isUnauthorized());
+        } catch (Exception exception) {
+            assertEquals(NestedServletException.class, exception.getClass());
+            assertTrue(exception.getMessage().contains(INVALID_REFRESH_TOKEN));
+        }
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Trocando a senha e revogando os refresh tokens emitidos antes da troca")
+    public void revokeRefreshTokenAfterPasswordChange() throws Exception {
+        AuthDTO dto = builder()
+                .login("marcos")
+                .password("18855698")
+                .build();
+
+        String response = mockMvc.
+                perform(post("/api/signin")
+                        .contentType(APPLICATION_JSON)
+                        .content(gson.toJson(dto)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String oldRefreshToken = JsonPath.read(response, "$.refreshToken");
+
+        User user = userService.findByLogin("marcos");
+        userService.save(UserDTO.builder()
+                .id(user.getId())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .birthDate(user.getBirthDate())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .phone(user.getPhone())
+                .password("novaSenha123")
+                .build());
+
+        try {
+            mockMvc.
+                    perform(post("/api/refresh")
+                            .contentType(APPLICATION_JSON)
+                            .content(gson.toJson(new RefreshTokenDTO(oldRefreshToken))))
+                    .andExpect(status().isUnauthorized());
+        } catch (Exception exception) {
+            assertEquals(NestedServletException.class, exception.getClass());
+            assertTrue(exception.getMessage().contains(INVALID_REFRESH_TOKEN));
+        }
     }
 
     @AfterAll
@@ -1,13 +1,14 @@
 package br.com.api.pitang.controllers;
 
 
-import br.com.api.pitang.configs.security.UserDetail;
+import br.com.api.pitang.configs.security.UserPrincipal;
 import static br.com.api.pitang.constants.MessagesConstants.CAR_NOT_FOUND;
 import static br.com.api.pitang.constants.MessagesConstants.INVALID_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.LICENSE_ALREADY_EXISTS;
 import static br.com.api.pitang.constants.MessagesConstants.MISSING_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.PERMISSION_DENIED;
 import br.com.api.pitang.data.dtos.CarDTO;
+import br.com.api.pitang.data.dtos.CarUsageReportDTO;
 import br.com.api.pitang.data.models.Car;
 import br.com.api.pitang.data.models.User;
 import static br.com.api.pitang.factory.CarFactory.buildCars;
@@ -17,7 +18,10 @@ import br.com.api.pitang.repositories.CarRepository;
 import br.com.api.pitang.repositories.UserRepository;
 import static br.com.api.pitang.utils.DozerConverter.convertObject;
 import com.google.gson.Gson;
+import com.jayway.jsonpath.JsonPath;
 import java.time.LocalDateTime;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import org.junit.jupiter.api.AfterAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -90,7 +94,7 @@ public class CarControllerTest {
         this.car = repository.save(car);
 
         SecurityContext securityContext = new SecurityContextImpl();
-        securityContext.setAuthentication(new TestingAuthenticationToken(new UserDetail(user), null));
+        securityContext.setAuthentication(new TestingAuthenticationToken(UserPrincipal.of(user), null));
         setContext(securityContext);
     }
 
@@ -213,6 +217,24 @@ public class CarControllerTest {
                 .andExpect(jsonPath("$.content.[1].color").value("Azul"))
                 .andExpect(jsonPath("$.content.[1].model").value("Fusca 1300cc"));
 
+        String firstPage = mockMvc.perform(get("/api/cars").param("cursor", "").param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content.[0].model").value("Uno Miller"))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(get("/api/cars").param("cursor", JsonPath.<String>read(firstPage, "$.nextCursor")).param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.[0].id").value(this.car.getId()))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/api/cars").param("slice", "true").param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.[0].model").value("Uno Miller"))
+                .andExpect(jsonPath("$.last").value(false))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+
         repository.deleteById(car.getId());
     }
 
@@ -231,6 +253,46 @@ public class CarControllerTest {
 
     @Test
     @Order(10)
+    @DisplayName("Consultando historico de uso do carro do usario logado")
+    public void findCarUsage() throws Exception {
+        mockMvc.perform(get("/api/cars/" + car.getId() + "/usage").param("window", "day"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.carId").value(car.getId()))
+                .andExpect(jsonPath("$.window").value("day"))
+                .andExpect(jsonPath("$.bucket").value("hour"))
+                .andExpect(jsonPath("$.total").value(0))
+                .andExpect(jsonPath("$.buckets.length()").value(24));
+
+        String errorMessage = requireNonNull(mockMvc.perform(get("/api/cars/" + car.getId() + "/usage").param("window", "year"))
+                .andExpect(status().isBadRequest()).andReturn().getResolvedException()).getMessage();
+
+        assertEquals(INVALID_FIELDS, errorMessage);
+    }
+
+    @Test
+    @Order(11)
+    @DisplayName("Informando em lote os acessos registrados offline")
+    public void reportCarUsage() throws Exception {
+        Long saved = repository.findById(car.getId()).get().getUsageCounter();
+        long usageCounter = saved != null ? saved : 0L;
+
+        mockMvc.perform(post("/api/cars/usage").contentType(APPLICATION_JSON).content(gson.toJson(asList(
+                        CarUsageReportDTO.builder().carId(car.getId()).count(3L).build(),
+                        CarUsageReportDTO.builder().carId(car.getId()).count(2L).build()))))
+                .andExpect(status().isNoContent());
+
+        assertEquals(usageCounter + 5, repository.findById(car.getId()).get().getUsageCounter());
+
+        String errorMessage = requireNonNull(mockMvc.perform(post("/api/cars/usage").contentType(APPLICATION_JSON)
+                        .content(gson.toJson(singletonList(CarUsageReportDTO.builder().carId(car.getId()).count(-1L).build()))))
+                .andExpect(status().isBadRequest()).andReturn().getResolvedException()).getMessage();
+
+        assertEquals(INVALID_FIELDS, errorMessage);
+        assertEquals(usageCounter + 5, repository.findById(car.getId()).get().getUsageCounter());
+    }
+
+    @Test
+    @Order(12)
     @DisplayName("Atualizando carro do usario logado com sucesso")
     public void updateCar() throws Exception {
         Car car = buildCars().get(3);
@@ -249,7 +311,7 @@ public class CarControllerTest {
     }
 
     @Test
-    @Order(11)
+    @Order(13)
     @DisplayName("Erro ao atualizar carro com id inexistente")
     public void errorUpdateCar() throws Exception {
         Car car = buildCars().get(3);
@@ -269,7 +331,7 @@ public class CarControllerTest {
     }
 
     @Test
-    @Order(12)
+    @Order(14)
     @DisplayName("Deletando carro do usuario logado")
     public void deleteCar() throws Exception {
         mockMvc.perform(delete("/api/cars/" + car.getId()))
@@ -279,7 +341,7 @@ public class CarControllerTest {
     }
 
     @Test
-    @Order(13)
+    @Order(15)
     @DisplayName("Erro ao deletar carro permissao negada")
     public void errorDeleteCar() throws Exception {
         User user = buildUsers().get(1);
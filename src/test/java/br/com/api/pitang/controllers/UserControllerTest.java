@@ -15,8 +15,10 @@ import static br.com.api.pitang.factory.UserFactory.buildUserDTOs;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
 import br.com.api.pitang.repositories.CarRepository;
 import br.com.api.pitang.repositories.UserRepository;
+import br.com.api.pitang.services.UserLeaderboard;
 import static br.com.api.pitang.utils.DozerConverter.convertObject;
 import com.google.gson.Gson;
+import com.jayway.jsonpath.JsonPath;
 import com.google.gson.GsonBuilder;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -65,6 +67,9 @@ public class UserControllerTest {
     @Autowired
     private CarRepository carRepository;
 
+    @Autowired
+    private UserLeaderboard leaderboard;
+
     private Long userId;
 
     private final Gson gson = new GsonBuilder()
@@ -196,6 +201,7 @@ public class UserControllerTest {
         userTwo.setCreatedAt(LocalDateTime.now());
         userTwo.setTotalUsageCounter(12L);
         userTwo = repository.save(userTwo);
+        leaderboard.rebuild();
 
         mockMvc.perform(get("/api/users"))
                 .andExpect(status().isOk())
@@ -216,7 +222,36 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.content.[1].phone").value("21988826756"))
                 .andExpect(jsonPath("$.content.[1].createdAt").isNotEmpty());
 
+        mockMvc.perform(get("/api/users/" + userId + "/rank"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(userId))
+                .andExpect(jsonPath("$.rank").value(2));
+
+        String firstPage = mockMvc.perform(get("/api/users").param("cursor", "").param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content.[0].login").value("marcos"))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(get("/api/users").param("cursor", JsonPath.<String>read(firstPage, "$.nextCursor")).param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.[0].id").value(userId))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/api/users").param("slice", "true").param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.[0].login").value("marcos"))
+                .andExpect(jsonPath("$.last").value(false))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+
+        mockMvc.perform(get("/api/users").param("slice", "true").param("pageNumber", "1").param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.[0].id").value(userId))
+                .andExpect(jsonPath("$.last").value(true));
+
         repository.deleteById(userTwo.getId());
+        leaderboard.rebuild();
     }
 
     @Test
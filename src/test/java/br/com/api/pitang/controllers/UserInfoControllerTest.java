@@ -1,7 +1,7 @@
 package br.com.api.pitang.controllers;
 
 
-import br.com.api.pitang.configs.security.UserDetail;
+import br.com.api.pitang.configs.security.UserPrincipal;
 import br.com.api.pitang.data.models.User;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
 import br.com.api.pitang.repositories.UserRepository;
@@ -50,7 +50,7 @@ public class UserInfoControllerTest {
         user = userRepository.save(user);
 
         SecurityContext securityContext = new SecurityContextImpl();
-        securityContext.setAuthentication(new TestingAuthenticationToken(new UserDetail(user),null));
+        securityContext.setAuthentication(new TestingAuthenticationToken(UserPrincipal.of(user), null));
         setContext(securityContext);
     }
 
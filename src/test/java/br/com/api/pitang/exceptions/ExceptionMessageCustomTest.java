@@ -22,6 +22,8 @@ import org.springframework.core.MethodParameter;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -70,6 +72,28 @@ public class ExceptionMessageCustomTest {
         assertEquals(404, requireNonNull(responseEntity.getBody()).getErrorCode());
     }
 
+    @Test
+    public void serviceUnavailableException() {
+        ServiceUnavailableException ex = new ServiceUnavailableException("Test exception message");
+
+        ResponseEntity<ExceptionResponse> responseEntity = exceptionMessage.serviceUnavailableException(ex);
+
+        assertEquals(SERVICE_UNAVAILABLE, responseEntity.getStatusCode());
+        assertEquals("Test exception message", requireNonNull(responseEntity.getBody()).getMessage());
+        assertEquals(503, requireNonNull(responseEntity.getBody()).getErrorCode());
+    }
+
+    @Test
+    public void tooManyRequestsException() {
+        TooManyRequestsException ex = new TooManyRequestsException("Test exception message");
+
+        ResponseEntity<ExceptionResponse> responseEntity = exceptionMessage.tooManyRequestsException(ex);
+
+        assertEquals(TOO_MANY_REQUESTS, responseEntity.getStatusCode());
+        assertEquals("Test exception message", requireNonNull(responseEntity.getBody()).getMessage());
+        assertEquals(429, requireNonNull(responseEntity.getBody()).getErrorCode());
+    }
+
     @Test
     public void badCredentialsException() {
         BadCredentialsException ex = new BadCredentialsException("Test exception message");
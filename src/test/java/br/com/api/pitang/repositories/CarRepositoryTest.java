@@ -5,8 +5,11 @@ import br.com.api.pitang.data.models.Car;
 import static br.com.api.pitang.factory.CarFactory.buildCars;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.NoSuchElementException;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -18,6 +21,7 @@ import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -40,6 +44,9 @@ public class CarRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     private Car car;
 
     @BeforeAll
@@ -114,6 +121,27 @@ public class CarRepositoryTest {
 
     @Test
     @Order(5)
+    @DisplayName("Atualizando o total do usuario por delta e corrigindo divergencias")
+    public void updateTotalUsageCounter() {
+        Long userId = car.getUser().getId();
+
+        userRepository.incrementTotalUsageCounter(userId, 5L);
+        entityManager.clear();
+
+        Long total = userRepository.findDistinctById(userId).get().getTotalUsageCounter();
+        entityManager.clear();
+
+        assertEquals(1, userRepository.reconcileTotalUsageCounters());
+        assertEquals(0, userRepository.reconcileTotalUsageCounters());
+        entityManager.clear();
+
+        assertEquals(35L, userRepository.findDistinctById(userId).get().getTotalUsageCounter());
+        assertNotEquals(35L, total);
+    }
+
+
+    @Test
+    @Order(6)
     @DisplayName("Listando todos os carros com a regra do bonus stage")
     public void findAllWithOrderBy() {
 
@@ -137,7 +165,31 @@ public class CarRepositoryTest {
 
 
     @Test
-    @Order(6)
+    @Order(7)
+    @DisplayName("Paginando por cursor e editando o carro sem sobrescrever o contador")
+    public void findAllByCursor() {
+        Long userId = car.getUser().getId();
+        List<Car> cars = repository.findAllByUserIdOrdered(userId, PageRequest.of(0, 10));
+        Car first = cars.get(0);
+
+        List<Car> next = repository.findAllByUserIdAfter(
+                userId, first.getUsageCounter(), first.getModel(), first.getId(), PageRequest.of(0, 10));
+        assertEquals(cars.stream().skip(1).map(Car::getId).collect(toList()),
+                next.stream().map(Car::getId).collect(toList()));
+
+        Long counter = first.getUsageCounter();
+        repository.updateUsageCounter(first.getId(), userId);
+        first.setModel("Zafira");
+        repository.saveAndFlush(first);
+        entityManager.clear();
+
+        Car saved = repository.findById(first.getId()).get();
+        assertEquals("Zafira", saved.getModel());
+        assertEquals(counter + 1, saved.getUsageCounter());
+    }
+
+    @Test
+    @Order(8)
     @DisplayName("Deletando carro pelo id")
     public void deleteById() {
         repository.deleteById(car.getId());
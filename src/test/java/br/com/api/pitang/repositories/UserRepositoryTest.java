@@ -1,6 +1,7 @@
 package br.com.api.pitang.repositories;
 
 
+import br.com.api.pitang.data.models.AppCounter;
 import br.com.api.pitang.data.models.User;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
 import java.time.LocalDate;
@@ -37,6 +38,10 @@ public class UserRepositoryTest {
 
     @Autowired
     private UserRepository repository;
+
+    @Autowired
+    private AppCounterRepository appCounterRepository;
+
     private User user;
 
     @BeforeAll
@@ -136,6 +141,20 @@ public class UserRepositoryTest {
         assertNotNull(user.getLastLogin());
     }
 
+    @Test
+    @Order(7)
+    @DisplayName("Atualizando hash da senha somente se o hash atual for o esperado")
+    public void updatePassword() {
+        String oldPassword = user.getPassword();
+
+        assertEquals(0, repository.updatePassword(user.getId(), "hash-desatualizado", "$2a$12$novo"));
+        assertEquals(1, repository.updatePassword(user.getId(), oldPassword, "$2a$12$novo"));
+
+        User user = repository.findDistinctById(this.user.getId()).get();
+
+        assertEquals("$2a$12$novo", user.getPassword());
+    }
+
     @Test
     @Order(8)
     @DisplayName("Listando todos os usuarios com a regra do bonus stage")
@@ -219,4 +238,22 @@ public class UserRepositoryTest {
         countUsers = repository.count();
         assertEquals(1, countUsers);
     }
+
+
+    @Test
+    @Order(11)
+    @DisplayName("Somando o total de usuarios nos shards e corrigindo pela contagem")
+    public void shardedUserCount() {
+        appCounterRepository.save(AppCounter.builder().name(AppCounter.USERS).shard(0).value(0L).build());
+        appCounterRepository.save(AppCounter.builder().name(AppCounter.USERS).shard(1).value(0L).build());
+        appCounterRepository.flush();
+
+        appCounterRepository.increment(AppCounter.USERS, 0, 2L);
+        appCounterRepository.increment(AppCounter.USERS, 1, 3L);
+        assertEquals(5L, appCounterRepository.findValue(AppCounter.USERS));
+
+        assertEquals(1, appCounterRepository.refreshUserCount());
+        assertEquals(0, appCounterRepository.refreshUserCount());
+        assertEquals(repository.count(), appCounterRepository.findValue(AppCounter.USERS));
+    }
 }
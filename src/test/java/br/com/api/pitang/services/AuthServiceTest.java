@@ -1,17 +1,27 @@
 package br.com.api.pitang.services;
 
 
+import br.com.api.pitang.configs.security.UserDetail;
 import br.com.api.pitang.configs.security.jwt.JwtTokenProvider;
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_LOGIN;
+import static br.com.api.pitang.constants.MessagesConstants.INVALID_REFRESH_TOKEN;
+import static br.com.api.pitang.constants.MessagesConstants.TOO_MANY_ATTEMPTS;
 import static br.com.api.pitang.constants.MessagesConstants.USER_NOT_FOUND;
 import br.com.api.pitang.data.dtos.AuthDTO;
+import br.com.api.pitang.data.dtos.RefreshTokenDTO;
 import static br.com.api.pitang.data.dtos.AuthDTO.builder;
 import br.com.api.pitang.data.models.User;
+import br.com.api.pitang.exceptions.TooManyRequestsException;
+import br.com.api.pitang.exceptions.UnauthorizedException;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDateTime;
 import java.util.Map;
 import static java.util.Optional.of;
 import javax.persistence.EntityNotFoundException;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Order;
@@ -20,14 +30,24 @@ import org.junit.jupiter.api.TestInstance;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import org.junit.jupiter.api.TestMethodOrder;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 
 @ActiveProfiles("test")
@@ -49,14 +69,26 @@ public class AuthServiceTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private Authentication authenticated(User user) {
+        UserDetail userDetail = new UserDetail(user);
+        return new UsernamePasswordAuthenticationToken(userDetail, null, userDetail.getAuthorities());
+    }
+
     @Test
     @Order(1)
     @DisplayName("Autenticacao com sucesso")
     public void successSignIn() {
 
-        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(null);
-        when(userService.findByLogin("ricardo")).thenReturn(of(buildUsers().get(0)).get());
+        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authenticated(of(buildUsers().get(0)).get()));
         when(tokenProvider.createToken(any(User.class))).thenReturn("FAKETOKENeyJhbGciOiJIUzI1NiJ9");
+        when(refreshTokenService.create(any(User.class))).thenReturn("FAKEREFRESHTOKEN");
         doNothing().when(userService).updateLastLogin(1L);
 
         AuthDTO authDTO = builder()
@@ -64,11 +96,13 @@ public class AuthServiceTest {
                 .password("00669988")
                 .build();
 
-        Map<Object, Object> response = service.signIn(authDTO);
+        Map<Object, Object> response = service.signIn(authDTO, "127.0.0.1");
 
         assertNotNull(response);
         assertEquals("Ricardo", response.get("name"));
         assertEquals("FAKETOKENeyJhbGciOiJIUzI1NiJ9", response.get("token"));
+        assertEquals("FAKEREFRESHTOKEN", response.get("refreshToken"));
+        verify(userService, never()).findByLogin(anyString());
     }
 
     @Test
@@ -77,20 +111,116 @@ public class AuthServiceTest {
     public void failedSignIn() {
 
         try{
-            when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(null);
-            when(userService.findByLogin("ricardo")).thenThrow(new EntityNotFoundException(USER_NOT_FOUND));
+            when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                    .thenThrow(new InternalAuthenticationServiceException(USER_NOT_FOUND,
+                            new EntityNotFoundException(USER_NOT_FOUND)));
 
             AuthDTO authDTO = builder()
                     .login("ricardo")
                     .password("00669988")
                     .build();
 
-            service.signIn(authDTO);
+            service.signIn(authDTO, "127.0.0.1");
 
         }catch (Exception ex) {
-            assertEquals(EntityNotFoundException.class, ex.getClass());
-            assertEquals(USER_NOT_FOUND, ex.getMessage());
+            assertEquals(BadCredentialsException.class, ex.getClass());
+            assertEquals(INVALID_LOGIN, ex.getMessage());
         }
     }
 
+    @Test
+    @Order(3)
+    @DisplayName("Autenticacao com sucesso refazendo o hash com custo fora da faixa")
+    public void successSignInWithRehash() {
+        User user = buildUsers().get(0);
+        String weakHash = new BCryptPasswordEncoder(4).encode("00669988");
+        user.setPassword(weakHash);
+
+        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(authenticated(user));
+        when(tokenProvider.createToken(any(User.class))).thenReturn("FAKETOKENeyJhbGciOiJIUzI1NiJ9");
+
+        AuthDTO authDTO = builder()
+                .login("ricardo")
+                .password("00669988")
+                .build();
+
+        service.signIn(authDTO, "127.0.0.1");
+
+        verify(userService, timeout(5000)).updatePassword(eq(1L), eq(weakHash), anyString(), any(LocalDateTime.class));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Renovacao do token com sucesso sem verificar a senha")
+    public void successRefresh() {
+        User user = buildUsers().get(1);
+        user.setLastLogin(LocalDateTime.now());
+
+        when(refreshTokenService.consume("REFRESHTOKEN")).thenReturn(user);
+        when(refreshTokenService.create(user)).thenReturn("NEWREFRESHTOKEN");
+        when(tokenProvider.createToken(user)).thenReturn("FAKETOKENeyJhbGciOiJIUzI1NiJ9");
+
+        Map<Object, Object> response = service.refresh(new RefreshTokenDTO("REFRESHTOKEN"));
+
+        assertEquals(user.getFirstName(), response.get("name"));
+        assertEquals("FAKETOKENeyJhbGciOiJIUzI1NiJ9", response.get("token"));
+        assertEquals("NEWREFRESHTOKEN", response.get("refreshToken"));
+        verify(userService, never()).updateLastLogin(user.getId());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Erro ao renovar o token com refresh token invalido")
+    public void failedRefresh() {
+        when(refreshTokenService.consume("INVALIDREFRESHTOKEN"))
+                .thenThrow(new UnauthorizedException(INVALID_REFRESH_TOKEN));
+
+        UnauthorizedException ex = assertThrows(UnauthorizedException.class,
+                () -> service.refresh(new RefreshTokenDTO("INVALIDREFRESHTOKEN")));
+
+        assertEquals(INVALID_REFRESH_TOKEN, ex.getMessage());
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Recusando login com falhas demais sem executar o BCrypt")
+    public void blockedSignIn() {
+        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenThrow(new BadCredentialsException(INVALID_LOGIN));
+
+        AuthDTO authDTO = builder()
+                .login("bloqueado")
+                .password("senhaerrada")
+                .build();
+
+        for (int i = 0; i < 5; i++)
+            assertThrows(BadCredentialsException.class, () -> service.signIn(authDTO, "10.1.1.1"));
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> service.signIn(authDTO, "10.1.1.2"));
+
+        assertEquals(TOO_MANY_ATTEMPTS, ex.getMessage());
+        verify(authManager, times(5)).authenticate(any(UsernamePasswordAuthenticationToken.class));
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Registrando a falha ao gravar o novo hash da senha")
+    public void failedRehash() throws InterruptedException {
+        User user = buildUsers().get(0);
+        String weakHash = new BCryptPasswordEncoder(4).encode("00669988");
+        user.setPassword(weakHash);
+
+        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(authenticated(user));
+        when(tokenProvider.createToken(any(User.class))).thenReturn("FAKETOKENeyJhbGciOiJIUzI1NiJ9");
+        when(userService.updatePassword(eq(1L), eq(weakHash), anyString(), any(LocalDateTime.class))).thenThrow(new IllegalStateException("banco fora"));
+
+        service.signIn(builder().login("ricardo").password("00669988").build(), "127.0.0.2");
+
+        verify(userService, timeout(5000)).updatePassword(eq(1L), eq(weakHash), anyString(), any(LocalDateTime.class));
+        for (int i = 0; i < 50 && registry.counter("security.password.rehash.failures", "reason", "error").count() == 0; i++)
+            Thread.sleep(100);
+        assertEquals(1.0, registry.counter("security.password.rehash.failures", "reason", "error").count());
+    }
+
 }
@@ -1,26 +1,36 @@
 package br.com.api.pitang.services;
 
 
-import br.com.api.pitang.configs.security.UserDetail;
+import br.com.api.pitang.configs.security.UserPrincipal;
 import static br.com.api.pitang.constants.MessagesConstants.CAR_NOT_FOUND;
 import static br.com.api.pitang.constants.MessagesConstants.INVALID_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.LICENSE_ALREADY_EXISTS;
 import static br.com.api.pitang.constants.MessagesConstants.MISSING_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.PERMISSION_DENIED;
 import br.com.api.pitang.data.dtos.CarDTO;
+import br.com.api.pitang.data.dtos.CarUsageDTO;
+import br.com.api.pitang.data.dtos.CarUsageReportDTO;
+import br.com.api.pitang.data.dtos.CursorPageDTO;
 import br.com.api.pitang.data.models.Car;
 import br.com.api.pitang.exceptions.ValidationException;
 import static br.com.api.pitang.factory.CarFactory.buildCars;
 import static br.com.api.pitang.factory.CarFactory.buildCarsDTOs;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
 import br.com.api.pitang.repositories.CarRepository;
+import br.com.api.pitang.repositories.UserRepository;
+import br.com.api.pitang.services.CarUsageHistory.Window;
+import static br.com.api.pitang.utils.CursorUtils.decode;
+import static br.com.api.pitang.utils.CursorUtils.encode;
 import java.time.Year;
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import java.util.List;
+import java.util.Map;
 import static java.util.Optional.of;
 import javax.persistence.EntityNotFoundException;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
@@ -30,7 +40,10 @@ import org.junit.jupiter.api.TestInstance;
 import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import org.junit.jupiter.api.TestMethodOrder;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,6 +54,9 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import static org.springframework.data.domain.Sort.Order.asc;
 import static org.springframework.data.domain.Sort.Order.desc;
@@ -64,11 +80,23 @@ public class CarServiceTest {
     @MockBean
     private CarRepository repository;
 
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private CarUsageAggregator usageAggregator;
+
+    @MockBean
+    private CarUsageHistory usageHistory;
+
+    @MockBean
+    private UserLeaderboard leaderboard;
+
     @BeforeAll
     @DisplayName("Preparando para iniciar os testes com um usuario salvo na sessao")
     public void setUp() {
         SecurityContext securityContext = new SecurityContextImpl();
-        securityContext.setAuthentication(new TestingAuthenticationToken(new UserDetail(buildUsers().get(0)),null));
+        securityContext.setAuthentication(new TestingAuthenticationToken(UserPrincipal.of(buildUsers().get(0)), null));
         setContext(securityContext);
     }
 
@@ -236,6 +264,9 @@ public class CarServiceTest {
 
         verify(repository, times(1)).findById(1L);
         verify(repository, times(1)).deleteById(1L);
+        verify(userRepository, times(1)).incrementTotalUsageCounter(1L, -15L);
+        verify(usageHistory, times(1)).remove(1L);
+        verify(leaderboard, times(1)).addDelta(1L, -15L);
     }
 
     @Test
@@ -257,10 +288,9 @@ public class CarServiceTest {
     @DisplayName("Consultando todos os carros do usuario")
     public void findAll() {
         List<Car> cars = asList(buildCars().get(0), buildCars().get(1));
-        Page<Car> page = new PageImpl<>(cars);
-
         Sort sort = by(desc("usageCounter"), asc("model"));
-        when(repository.findAllByUserId(1L, PageRequest.of(0, 10, sort))).thenReturn(page);
+        Slice<Car> slice = new SliceImpl<>(cars, PageRequest.of(0, 10, sort), false);
+        when(repository.findSliceByUserId(1L, PageRequest.of(0, 10, sort))).thenReturn(slice);
 
         Page<CarDTO> response = service.findAllByUser(0, 10);
 
@@ -337,11 +367,124 @@ public class CarServiceTest {
     @Order(17)
     @DisplayName("atualizando o contador de utilizacao do carro")
     public void updateUsageCounter() {
-        doNothing().when(repository).updateUsageCounter(1L, buildUsers().get(0).getId());
+        doNothing().when(usageAggregator).record(1L, buildUsers().get(0).getId());
 
         service.updateUsageCounter(1L);
 
-        verify(repository, times(1)).updateUsageCounter(1L, buildUsers().get(0).getId());
+        verify(usageAggregator, times(1)).record(1L, buildUsers().get(0).getId());
+        verify(usageHistory, times(1)).record(1L);
+        verify(repository, times(0)).updateUsageCounter(1L, buildUsers().get(0).getId());
+    }
+
+    @Test
+    @Order(18)
+    @DisplayName("Consultando o historico de uso do carro")
+    public void findUsage() {
+        CarUsageDTO usage = CarUsageDTO.builder().carId(1L).window("week").total(3L).build();
+        when(repository.findById(1L)).thenReturn(of(buildCars().get(0)));
+        when(usageHistory.usage(1L, Window.WEEK)).thenReturn(usage);
+
+        assertEquals(usage, service.findUsage(1L, "week"));
+    }
+
+    @Test
+    @Order(19)
+    @DisplayName("Erro ao consultar o historico de uso com janela invalida")
+    public void errorFindUsage() {
+        try {
+            service.findUsage(1L, "year");
+        } catch (Exception ex) {
+            assertEquals(ValidationException.class, ex.getClass());
+            assertEquals(INVALID_FIELDS, ex.getMessage());
+        }
+    }
+
+    @Test
+    @Order(20)
+    @DisplayName("Informando em lote os acessos registrados offline")
+    public void reportUsage() {
+        List<CarUsageReportDTO> usages = asList(
+                CarUsageReportDTO.builder().carId(1L).count(3L).build(),
+                CarUsageReportDTO.builder().carId(2L).count(4L).build(),
+                CarUsageReportDTO.builder().carId(1L).count(2L).build());
+        when(repository.findUserIdsByIdIn(any())).thenReturn(asList(1L, 1L));
+        when(usageAggregator.applyReport(eq(1L), anyMap())).thenReturn(2);
+
+        service.reportUsage(usages);
+
+        verify(usageAggregator, times(1)).applyReport(1L, Map.of(1L, 5L, 2L, 4L));
+        verify(usageHistory, times(1)).add(1L, 5L);
+        verify(usageHistory, times(1)).add(2L, 4L);
+        verify(leaderboard, times(1)).addDelta(1L, 9L);
+    }
+
+    @Test
+    @Order(21)
+    @DisplayName("Erro ao informar em lote acessos de carro de outro usuario")
+    public void errorReportUsage() {
+        when(repository.findUserIdsByIdIn(any())).thenReturn(singletonList(2L));
+
+        try {
+            service.reportUsage(singletonList(CarUsageReportDTO.builder().carId(3L).count(1L).build()));
+        } catch (Exception ex) {
+            assertEquals(ValidationException.class, ex.getClass());
+            assertEquals(PERMISSION_DENIED, ex.getMessage());
+        }
+
+        try {
+            service.reportUsage(singletonList(CarUsageReportDTO.builder().carId(3L).count(0L).build()));
+        } catch (Exception ex) {
+            assertEquals(ValidationException.class, ex.getClass());
+            assertEquals(INVALID_FIELDS, ex.getMessage());
+        }
+
+        verify(usageAggregator, never()).applyReport(eq(1L), eq(Map.of(3L, 1L)));
+    }
+
+    @Test
+    @Order(22)
+    @DisplayName("Consultando os carros do usuario logado por cursor")
+    public void findAllByUserAndCursor() {
+        when(repository.findAllByUserIdAfter(1L, 20L, "BMW GS 1200", 2L, PageRequest.of(0, 2)))
+                .thenReturn(asList(buildCars().get(0), buildCars().get(1)));
+
+        CursorPageDTO<CarDTO> response = service.findAllByUser(encode(20L, "BMW GS 1200", 2L), 1);
+
+        assertEquals(1, response.getContent().size());
+        assertEquals(1L, response.getContent().get(0).getId());
+        assertEquals(15L, decode(response.getNextCursor()).getCounter());
+        assertEquals("Corolla XLS", decode(response.getNextCursor()).getText());
+        assertEquals(1L, decode(response.getNextCursor()).getId());
+
+        try {
+            service.findAllByUser("", 0);
+        } catch (Exception ex) {
+            assertEquals(ValidationException.class, ex.getClass());
+            assertEquals(INVALID_FIELDS, ex.getMessage());
+        }
+    }
+
+    @Test
+    @Order(23)
+    @DisplayName("Consultando os carros do usuario em fatias e com o total mantido")
+    public void findSliceByUser() {
+        List<Car> cars = asList(buildCars().get(0), buildCars().get(1));
+        Sort sort = by(desc("usageCounter"), asc("model"));
+        Slice<Car> slice = new SliceImpl<>(cars, PageRequest.of(0, 2, sort), true);
+        when(repository.findSliceByUserId(1L, PageRequest.of(0, 2, sort))).thenReturn(slice);
+        when(userRepository.findCarCount(1L)).thenReturn(5L);
+
+        Slice<CarDTO> response = service.findSliceByUser(0, 2);
+
+        assertTrue(response.hasNext());
+        assertEquals(2, response.getContent().size());
+        assertEquals(1L, response.getContent().get(0).getId());
+
+        Page<CarDTO> page = service.findAllByUser(0, 2);
+
+        assertEquals(5, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+        verify(repository, times(0)).findAllByUserId(any(), any(Pageable.class));
     }
 
 }
@@ -0,0 +1,177 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.data.models.Car;
+import br.com.api.pitang.data.models.User;
+import static br.com.api.pitang.factory.CarFactory.buildCars;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import br.com.api.pitang.repositories.CarRepository;
+import br.com.api.pitang.repositories.UserRepository;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import static java.util.Collections.singletonMap;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import org.springframework.test.context.ActiveProfiles;
+import static org.springframework.test.util.ReflectionTestUtils.getField;
+
+@ActiveProfiles("test")
+@TestInstance(PER_CLASS)
+@TestMethodOrder(OrderAnnotation.class)
+@DisplayName("Testes de integracao do agregador de uso dos carros")
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class CarUsageAggregatorTest {
+
+    @Autowired
+    private CarUsageAggregator aggregator;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    private User user;
+    private Car car;
+
+    @BeforeAll
+    public void setUp() {
+        user = buildUsers().get(3);
+        user.setId(null);
+        user.setLogin("usagelogin");
+        user.setEmail("usagelogin@gmail.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setTotalUsageCounter(0L);
+        user = userRepository.save(user);
+
+        car = buildCars().get(2);
+        car.setCreatedAt(LocalDateTime.now());
+        car.setUsageCounter(0L);
+        car.setUser(user);
+        car = carRepository.save(car);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Gravando em lote os acessos concorrentes ao carro e o total do usuario")
+    public void flushConcurrentHits() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++)
+            executor.execute(() -> aggregator.record(car.getId(), user.getId()));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, SECONDS));
+
+        assertEquals(0L, carRepository.findById(car.getId()).get().getUsageCounter());
+
+        aggregator.flush();
+
+        assertEquals(1000L, carRepository.findById(car.getId()).get().getUsageCounter());
+        assertEquals(1000L, userRepository.findDistinctById(user.getId()).get().getTotalUsageCounter());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Gravando apenas os acessos novos a cada flush")
+    public void flushOnlyDelta() {
+        aggregator.flush();
+        aggregator.record(car.getId(), user.getId());
+        aggregator.record(car.getId(), user.getId());
+        aggregator.flush();
+
+        assertEquals(1002L, carRepository.findById(car.getId()).get().getUsageCounter());
+        assertEquals(1002L, userRepository.findDistinctById(user.getId()).get().getTotalUsageCounter());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Ignorando acessos de outro usuario que nao e o dono do carro")
+    public void ignoreOtherUser() {
+        aggregator.record(car.getId(), user.getId() + 1000);
+        aggregator.flush();
+
+        assertEquals(1002L, carRepository.findById(car.getId()).get().getUsageCounter());
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Reaplicando na inicializacao o journal de uma execucao interrompida")
+    public void replayJournal() throws Exception {
+        CarUsageJournal journal = (CarUsageJournal) getField(aggregator, "journal");
+        CarUsageJournal crashed = new CarUsageJournal(requireNonNull(journal).getDirectory(), 64);
+        crashed.append(car.getId(), user.getId(), 2L);
+        crashed.append(car.getId(), user.getId(), 1L);
+        crashed.close();
+
+        aggregator.replay();
+
+        assertEquals(1005L, carRepository.findById(car.getId()).get().getUsageCounter());
+        assertEquals(1005L, userRepository.findDistinctById(user.getId()).get().getTotalUsageCounter());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Somando em um unico update os acessos informados em lote")
+    public void applyReport() {
+        assertEquals(1, aggregator.applyReport(user.getId(), singletonMap(car.getId(), 5L)));
+        assertEquals(0, aggregator.applyReport(user.getId() + 1000, singletonMap(car.getId(), 5L)));
+
+        assertEquals(1010L, carRepository.findById(car.getId()).get().getUsageCounter());
+        assertEquals(1010L, userRepository.findDistinctById(user.getId()).get().getTotalUsageCounter());
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Descartando na inicializacao um segmento ja aplicado que nao foi removido do disco")
+    public void skipAppliedSegment() throws Exception {
+        CarUsageJournal journal = (CarUsageJournal) getField(aggregator, "journal");
+        Path directory = requireNonNull(journal).getDirectory();
+        List<Path> before = list(directory);
+        CarUsageJournal crashed = new CarUsageJournal(directory, 64);
+        crashed.append(car.getId(), user.getId(), 3L);
+        crashed.close();
+
+        Path segment = list(directory).stream().filter(file -> !before.contains(file)).findFirst().get();
+        byte[] content = Files.readAllBytes(segment);
+
+        aggregator.replay();
+        assertEquals(1013L, carRepository.findById(car.getId()).get().getUsageCounter());
+
+        Files.write(segment, content);
+        aggregator.replay();
+
+        assertTrue(Files.notExists(segment));
+        assertEquals(1013L, carRepository.findById(car.getId()).get().getUsageCounter());
+        assertEquals(1013L, userRepository.findDistinctById(user.getId()).get().getTotalUsageCounter());
+    }
+
+    private List<Path> list(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(toList());
+        }
+    }
+
+    @AfterAll
+    public void deleteUser() {
+        carRepository.deleteById(car.getId());
+        userRepository.deleteById(user.getId());
+    }
+}
@@ -0,0 +1,159 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.data.dtos.CarUsageDTO;
+import br.com.api.pitang.data.models.Car;
+import br.com.api.pitang.data.models.CarUsageRollup;
+import br.com.api.pitang.data.models.User;
+import static br.com.api.pitang.factory.CarFactory.buildCars;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import br.com.api.pitang.repositories.CarRepository;
+import br.com.api.pitang.repositories.CarUsageRollupRepository;
+import br.com.api.pitang.repositories.UserRepository;
+import br.com.api.pitang.services.CarUsageHistory.Window;
+import static java.lang.System.currentTimeMillis;
+import java.time.LocalDateTime;
+import java.util.List;
+import static java.util.stream.Collectors.toList;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+@TestInstance(PER_CLASS)
+@TestMethodOrder(OrderAnnotation.class)
+@DisplayName("Testes de integracao do historico de uso dos carros")
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class CarUsageHistoryTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 3_600_000L;
+
+    @Autowired
+    private CarUsageHistory history;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private CarUsageRollupRepository rollupRepository;
+
+    private User user;
+    private Car car;
+
+    @BeforeAll
+    public void setUp() {
+        user = buildUsers().get(3);
+        user.setId(null);
+        user.setLogin("historylogin");
+        user.setEmail("historylogin@gmail.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user = userRepository.save(user);
+
+        car = buildCars().get(2);
+        car.setLicensePlate("HIS-2024");
+        car.setCreatedAt(LocalDateTime.now());
+        car.setUsageCounter(0L);
+        car.setUser(user);
+        car = carRepository.save(car);
+    }
+
+    private List<CarUsageRollup> rollups() {
+        return rollupRepository.findAll().stream()
+                .filter(rollup -> rollup.getCarId().equals(car.getId()))
+                .collect(toList());
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Consultando as janelas de hora, dia e semana em memoria")
+    public void usageWindows() {
+        long now = (currentTimeMillis() / HOUR) * HOUR + 30 * MINUTE;
+        Long carId = 999_999L;
+
+        history.record(carId, now);
+        history.record(carId, now);
+        history.record(carId, now - 5 * MINUTE);
+        history.record(carId, now - 2 * HOUR);
+        history.record(carId, now - 3 * 24 * HOUR);
+        history.record(carId, now - 8 * 24 * HOUR);
+
+        CarUsageDTO hour = history.usage(carId, Window.HOUR, now);
+        assertEquals(60, hour.getBuckets().size());
+        assertEquals(3L, hour.getTotal());
+        assertEquals(2L, hour.getBuckets().get(59));
+        assertEquals(1L, hour.getBuckets().get(54));
+
+        CarUsageDTO day = history.usage(carId, Window.DAY, now);
+        assertEquals(24, day.getBuckets().size());
+        assertEquals(4L, day.getTotal());
+        assertEquals(3L, day.getBuckets().get(23));
+        assertEquals(1L, day.getBuckets().get(21));
+
+        assertEquals(5L, history.usage(carId, Window.WEEK, now).getTotal());
+        assertEquals(0L, history.usage(carId, Window.HOUR, now + 2 * HOUR).getTotal());
+
+        history.remove(carId);
+        assertEquals(0L, history.usage(carId, Window.WEEK, now).getTotal());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Gravando uma linha por carro e hora e recarregando o historico")
+    public void rollupAndLoad() {
+        long now = currentTimeMillis();
+        history.record(car.getId(), now);
+        history.record(car.getId(), now);
+        history.rollup();
+
+        assertEquals(1, rollups().size());
+        assertEquals(2L, rollups().get(0).getUsageCount());
+
+        history.record(car.getId(), now);
+        history.rollup();
+
+        assertEquals(1, rollups().size());
+        assertEquals(3L, rollups().get(0).getUsageCount());
+
+        history.remove(car.getId());
+        history.load();
+
+        assertEquals(3L, history.usage(car.getId(), Window.WEEK, now).getTotal());
+        assertEquals(3L, history.usage(car.getId(), Window.DAY, now).getTotal());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Somando na mesma hora os acessos gravados por outra instancia")
+    public void rollupKeepsOtherInstances() {
+        CarUsageRollup rollup = rollups().get(0);
+        rollup.setUsageCount(rollup.getUsageCount() + 10);
+        rollupRepository.save(rollup);
+
+        history.record(car.getId(), currentTimeMillis());
+        history.rollup();
+
+        assertEquals(1, rollups().size());
+        assertEquals(14L, rollups().get(0).getUsageCount());
+    }
+
+    @AfterAll
+    public void deleteUser() {
+        history.remove(car.getId());
+        carRepository.deleteById(car.getId());
+        userRepository.deleteById(user.getId());
+    }
+}
@@ -0,0 +1,96 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.services.CarUsageJournal.Segment;
+import br.com.api.pitang.services.CarUsageJournal.UsageKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Testes unitarios do journal de uso dos carros")
+public class CarUsageJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private long total(List<Segment> segments, UsageKey key) {
+        return segments.stream().mapToLong(segment -> segment.fold().getOrDefault(key, 0L)).sum();
+    }
+
+    @Test
+    @DisplayName("Somando registros concorrentes e abrindo novos segmentos quando o atual enche")
+    public void appendAndRotate() throws Exception {
+        CarUsageJournal journal = new CarUsageJournal(directory, 64);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            long carId = i % 2 == 0 ? 1L : 2L;
+            executor.execute(() -> journal.append(carId, 7L, 1L));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, SECONDS));
+
+        List<Segment> segments = journal.rotate();
+
+        assertTrue(segments.size() >= 1000 / 64);
+        assertEquals(500L, total(segments, new UsageKey(1L, 7L)));
+        assertEquals(500L, total(segments, new UsageKey(2L, 7L)));
+        assertTrue(journal.rotate().isEmpty());
+
+        for (Segment segment : segments)
+            segment.delete();
+        journal.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Reaplicando segmentos de uma execucao interrompida")
+    public void recoverUnappliedSegments() throws Exception {
+        CarUsageJournal crashed = new CarUsageJournal(directory, 64);
+        crashed.append(1L, 7L, 3L);
+        crashed.append(1L, 7L, 2L);
+        crashed.append(2L, 8L, 1L);
+        crashed.close();
+
+        CarUsageJournal journal = new CarUsageJournal(directory, 64);
+        List<Segment> segments = journal.recover();
+
+        assertEquals(1, segments.size());
+        Map<UsageKey, Long> usages = segments.get(0).fold();
+        assertEquals(2, usages.size());
+        assertEquals(5L, usages.get(new UsageKey(1L, 7L)));
+        assertEquals(1L, usages.get(new UsageKey(2L, 8L)));
+
+        segments.get(0).delete();
+        assertTrue(journal.recover().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    @DisplayName("Ignorando segmentos de outra instancia em execucao")
+    public void ignoreLockedSegments() throws Exception {
+        CarUsageJournal running = new CarUsageJournal(directory, 64);
+        running.append(1L, 7L, 1L);
+        List<Segment> segments = running.rotate();
+
+        CarUsageJournal journal = new CarUsageJournal(directory, 64);
+
+        assertTrue(journal.recover().isEmpty());
+
+        segments.get(0).delete();
+        running.close();
+        journal.close();
+    }
+}
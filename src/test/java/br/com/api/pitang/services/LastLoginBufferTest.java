@@ -0,0 +1,101 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.data.models.User;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import br.com.api.pitang.repositories.UserRepository;
+import java.time.LocalDateTime;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ActiveProfiles("test")
+@TestInstance(PER_CLASS)
+@TestMethodOrder(OrderAnnotation.class)
+@DisplayName("Testes de integracao da fila de ultimo login")
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class LastLoginBufferTest {
+
+    @Autowired
+    private LastLoginBuffer buffer;
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeAll
+    public void setUp() {
+        user = buildUsers().get(3);
+        user.setId(null);
+        user.setLogin("bufferlogin");
+        user.setEmail("bufferlogin@gmail.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user = repository.save(user);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Gravando apenas o login mais recente de cada usuario no flush")
+    public void flushKeepsLatest() {
+        LocalDateTime latest = LocalDateTime.now().truncatedTo(MILLIS);
+
+        buffer.record(user.getId(), latest.minusMinutes(5));
+        buffer.record(user.getId(), latest);
+        buffer.record(user.getId(), latest.minusMinutes(1));
+
+        assertNull(repository.findDistinctById(user.getId()).get().getLastLogin());
+
+        buffer.flush();
+
+        assertEquals(latest, repository.findDistinctById(user.getId()).get().getLastLogin());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Nao sobrescrevendo um login mais novo ja gravado")
+    public void flushDoesNotGoBack() {
+        LocalDateTime saved = repository.findDistinctById(user.getId()).get().getLastLogin();
+
+        buffer.record(user.getId(), saved.minusDays(1));
+        buffer.flush();
+
+        assertEquals(saved, repository.findDistinctById(user.getId()).get().getLastLogin());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Mantendo os logins gravados mesmo que a transacao de quem chamou seja desfeita")
+    public void flushSurvivesCallerRollback() {
+        LocalDateTime latest = LocalDateTime.now().plusMinutes(1).truncatedTo(MILLIS);
+        buffer.record(user.getId(), latest);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            buffer.flush();
+            status.setRollbackOnly();
+        });
+
+        assertEquals(latest, repository.findDistinctById(user.getId()).get().getLastLogin());
+    }
+
+    @AfterAll
+    public void deleteUser() {
+        repository.deleteById(user.getId());
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.api.pitang.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import static java.util.Arrays.asList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+@DisplayName("Testes unitarios do ranking de usuarios")
+public class UserLeaderboardTest {
+
+    @Test
+    @DisplayName("Ordenando pelo contador e desempatando pelo login")
+    public void orderByCounterAndLogin() {
+        UserLeaderboard leaderboard = new UserLeaderboard(new SimpleMeterRegistry());
+        leaderboard.put(1L, "ricardo", 10L);
+        leaderboard.put(2L, "nando01", 25L);
+        leaderboard.put(3L, "mendes", 10L);
+        leaderboard.put(4L, "marcos", 0L);
+
+        assertEquals(asList(2L, 3L, 1L, 4L), leaderboard.page(0, 10));
+        assertEquals(asList(3L, 1L), leaderboard.page(1, 2));
+        assertEquals(asList(4L), leaderboard.page(3, 2));
+        assertEquals(0, leaderboard.page(4, 2).size());
+        assertEquals(3L, leaderboard.rank(1L));
+        assertEquals(4, leaderboard.size());
+        assertEquals(asList(1L, 4L), leaderboard.pageAfter(10L, "mendes", 3L, 10));
+        assertEquals(asList(3L, 1L), leaderboard.pageAfter(12L, "zeca", 9L, 2));
+
+        leaderboard.addDelta(4L, 30L);
+        leaderboard.remove(2L);
+
+        assertEquals(asList(4L, 3L, 1L), leaderboard.page(0, 10));
+        assertEquals(1L, leaderboard.rank(4L));
+        assertEquals(30L, leaderboard.counter(4L));
+        assertNull(leaderboard.rank(2L));
+        assertEquals(3, leaderboard.size());
+    }
+
+    @Test
+    @DisplayName("Mantendo a mesma ordem de uma ordenacao completa apos varias alteracoes")
+    public void randomUpdates() {
+        UserLeaderboard leaderboard = new UserLeaderboard(new SimpleMeterRegistry());
+        Random random = new Random(42);
+        long[] counters = new long[500];
+
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = random.nextInt(50);
+            leaderboard.put((long) i, "user" + i, counters[i]);
+        }
+        for (int i = 0; i < 5000; i++) {
+            int id = random.nextInt(counters.length);
+            long delta = random.nextInt(10) - 3;
+            counters[id] += delta;
+            leaderboard.addDelta((long) id, delta);
+        }
+
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < counters.length; i++)
+            expected.add(i);
+        expected = expected.stream()
+                .sorted(Comparator.<Long>comparingLong(id -> -counters[id.intValue()]).thenComparing(id -> "user" + id))
+                .collect(toList());
+
+        assertEquals(expected, leaderboard.page(0, counters.length));
+        assertEquals(expected.subList(120, 140), leaderboard.page(120, 20));
+        for (int position = 0; position < expected.size(); position += 37)
+            assertEquals(position + 1L, leaderboard.rank(expected.get(position)));
+
+        Long last = expected.get(199);
+        assertEquals(expected.subList(200, 230),
+                leaderboard.pageAfter(counters[last.intValue()], "user" + last, last, 30));
+    }
+
+    @Test
+    @DisplayName("Reaplicando na arvore nova as alteracoes feitas durante a remontagem")
+    public void keepChangesDuringRebuild() throws SQLException {
+        UserLeaderboard leaderboard = new UserLeaderboard(new SimpleMeterRegistry());
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        setField(leaderboard, "jdbcTemplate", jdbcTemplate);
+        leaderboard.put(1L, "ricardo", 10L);
+        leaderboard.put(2L, "nando01", 5L);
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(1L, 2L);
+        when(rs.getString(2)).thenReturn("ricardo", "nando01");
+        when(rs.getLong(3)).thenReturn(10L, 5L);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(rs);
+            leaderboard.addDelta(2L, 20L);
+            leaderboard.put(3L, "mendes", 7L);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        leaderboard.rebuild();
+
+        assertEquals(asList(2L, 1L, 3L), leaderboard.page(0, 10));
+        assertEquals(25L, leaderboard.counter(2L));
+        assertEquals(7L, leaderboard.counter(3L));
+
+        leaderboard.addDelta(1L, 1L);
+        assertEquals(11L, leaderboard.counter(1L));
+    }
+}
@@ -1,26 +1,32 @@
 package br.com.api.pitang.services;
 
-import br.com.api.pitang.configs.security.UserDetail;
+import br.com.api.pitang.configs.security.UserPrincipal;
 import static br.com.api.pitang.constants.MessagesConstants.EMAIL_ALREADY_EXISTS;
 import static br.com.api.pitang.constants.MessagesConstants.INVALID_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.LOGIN_ALREADY_EXISTS;
 import static br.com.api.pitang.constants.MessagesConstants.MISSING_FIELDS;
 import static br.com.api.pitang.constants.MessagesConstants.USER_NOT_FOUND;
+import br.com.api.pitang.data.dtos.CursorPageDTO;
 import br.com.api.pitang.data.dtos.UserDTO;
+import br.com.api.pitang.data.dtos.UserRankDTO;
 import br.com.api.pitang.data.models.User;
 import br.com.api.pitang.exceptions.ValidationException;
 import static br.com.api.pitang.factory.UserFactory.buildUserDTOs;
 import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import br.com.api.pitang.repositories.AppCounterRepository;
 import br.com.api.pitang.repositories.UserRepository;
+import static br.com.api.pitang.utils.CursorUtils.decode;
+import static br.com.api.pitang.utils.CursorUtils.encode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import static java.util.Arrays.asList;
-import java.util.List;
+import static java.util.Collections.emptyList;
 import static java.util.Optional.of;
 import javax.persistence.EntityNotFoundException;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Order;
@@ -30,6 +36,7 @@ import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
 import org.junit.jupiter.api.TestMethodOrder;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,12 +45,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
-import static org.springframework.data.domain.Sort.Order.asc;
-import static org.springframework.data.domain.Sort.Order.desc;
-import static org.springframework.data.domain.Sort.by;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import static org.springframework.security.core.context.SecurityContextHolder.setContext;
@@ -63,6 +66,12 @@ public class UserServiceTest {
     @MockBean
     private UserRepository repository;
 
+    @MockBean
+    private UserLeaderboard leaderboard;
+
+    @MockBean
+    private AppCounterRepository appCounterRepository;
+
     @Test
     @Order(1)
     @DisplayName("Criando um usuario")
@@ -341,11 +350,9 @@ public class UserServiceTest {
     @Order(18)
     @DisplayName("Consultando todos os usuarios")
     public void findAll() {
-        List<User> users = asList(buildUsers().get(0), buildUsers().get(1));
-        Page<User> page = new PageImpl<>(users);
-
-        Sort sort =  by(desc("totalUsageCounter"), asc("login"));
-        when(repository.findAll(PageRequest.of(0, 10, sort))).thenReturn(page);
+        when(leaderboard.page(0, 10)).thenReturn(asList(1L, 2L));
+        when(leaderboard.size()).thenReturn(2);
+        when(repository.findAllById(asList(1L, 2L))).thenReturn(asList(buildUsers().get(0), buildUsers().get(1)));
 
         Page<UserDTO> response = service.findAll(0, 10);
 
@@ -394,6 +401,7 @@ public class UserServiceTest {
         assertNotNull(userDTO.getCreatedAt());
         assertNull(userDTO.getLastLogin());
         assertNull(userDTO.getCars());
+        verify(leaderboard, times(1)).put(1L, "ricardo", null);
     }
 
     @Test
@@ -471,7 +479,7 @@ public class UserServiceTest {
     @DisplayName("atualizando o contador total de utilizacao dos carros do usuario")
     public void updateTotalUsageCounter() {
         SecurityContext securityContext = new SecurityContextImpl();
-        securityContext.setAuthentication(new TestingAuthenticationToken(new UserDetail(buildUsers().get(0)),null));
+        securityContext.setAuthentication(new TestingAuthenticationToken(UserPrincipal.of(buildUsers().get(0)), null));
         setContext(securityContext);
 
         doNothing().when(repository).updateTotalUsageCounter(buildUsers().get(0).getId());
@@ -481,4 +489,130 @@ public class UserServiceTest {
         verify(repository, times(1)).updateTotalUsageCounter(1L);
     }
 
+    @Test
+    @Order(24)
+    @DisplayName("corrigindo por schedule o contador total de utilizacao que divergiu")
+    public void reconcileTotalUsageCounters() {
+        when(repository.reconcileTotalUsageCounters()).thenReturn(2);
+
+        service.reconcileTotalUsageCounters();
+
+        verify(repository, times(1)).reconcileTotalUsageCounters();
+    }
+
+    @Test
+    @Order(25)
+    @DisplayName("Consultando todos os usuarios pelo ranking em memoria")
+    public void findAllFromLeaderboard() {
+        when(leaderboard.isLoaded()).thenReturn(true);
+        when(leaderboard.counter(2L)).thenReturn(30L);
+        when(leaderboard.page(5, 5)).thenReturn(asList(2L, 1L));
+        when(leaderboard.size()).thenReturn(7);
+        when(repository.findAllById(asList(2L, 1L))).thenReturn(asList(buildUsers().get(0), buildUsers().get(1)));
+
+        Page<UserDTO> response = service.findAll(1, 5);
+
+        assertEquals(7, response.getTotalElements());
+        assertEquals(2, response.getContent().size());
+        assertEquals(2L, response.getContent().get(0).getId());
+        assertEquals(1L, response.getContent().get(1).getId());
+        assertEquals(30L, response.getContent().get(0).getTotalUsageCounter());
+        verify(repository, times(0)).findAll(any(Pageable.class));
+        when(leaderboard.isLoaded()).thenReturn(false);
+    }
+
+    @Test
+    @Order(26)
+    @DisplayName("Consultando a posicao do usuario no ranking")
+    public void findRank() {
+        when(leaderboard.rank(1L)).thenReturn(3L);
+        when(leaderboard.counter(1L)).thenReturn(12L);
+
+        UserRankDTO rank = service.findRank(1L);
+
+        assertEquals(1L, rank.getId());
+        assertEquals(3L, rank.getRank());
+        assertEquals(12L, rank.getTotalUsageCounter());
+
+        try {
+            service.findRank(99L);
+        } catch (Exception ex) {
+            assertEquals(EntityNotFoundException.class, ex.getClass());
+            assertEquals(USER_NOT_FOUND, ex.getMessage());
+        }
+    }
+
+    @Test
+    @Order(27)
+    @DisplayName("Consultando os usuarios do ranking por cursor")
+    public void findAllByCursor() {
+        when(leaderboard.pageAfter(25L, "nando01", 2L, 2)).thenReturn(asList(1L, 5L));
+        when(leaderboard.counter(1L)).thenReturn(10L);
+        when(repository.findAllById(asList(1L, 5L))).thenReturn(asList(buildUsers().get(0), buildUsers().get(4)));
+
+        CursorPageDTO<UserDTO> response = service.findAll(encode(25L, "nando01", 2L), 1);
+
+        assertEquals(1, response.getContent().size());
+        assertEquals(1L, response.getContent().get(0).getId());
+        assertEquals(10L, decode(response.getNextCursor()).getCounter());
+        assertEquals("ricardo", decode(response.getNextCursor()).getText());
+        assertEquals(1L, decode(response.getNextCursor()).getId());
+
+        try {
+            service.findAll("cursor-invalido", 1);
+        } catch (Exception ex) {
+            assertEquals(ValidationException.class, ex.getClass());
+            assertEquals(INVALID_FIELDS, ex.getMessage());
+        }
+    }
+
+    @Test
+    @Order(28)
+    @DisplayName("Consultando os usuarios do ranking em fatias, sem total")
+    public void findSlice() {
+        when(leaderboard.page(2, 3)).thenReturn(asList(2L, 1L, 5L));
+        when(repository.findAllById(asList(2L, 1L))).thenReturn(asList(buildUsers().get(0), buildUsers().get(1)));
+
+        Slice<UserDTO> response = service.findSlice(1, 2);
+
+        assertTrue(response.hasNext());
+        assertEquals(2, response.getContent().size());
+        assertEquals(2L, response.getContent().get(0).getId());
+        assertEquals(1L, response.getContent().get(1).getId());
+        verify(leaderboard, times(0)).size();
+    }
+
+    @Test
+    @Order(29)
+    @DisplayName("Carregando o ranking em memoria antes da consulta, sem ordenar a tabela de usuarios")
+    public void findAllLoadsLeaderboard() {
+        reset(leaderboard);
+        when(leaderboard.page(0, 2)).thenReturn(asList(2L, 1L));
+        when(leaderboard.size()).thenReturn(40);
+        when(repository.findAllById(asList(2L, 1L))).thenReturn(asList(buildUsers().get(0), buildUsers().get(1)));
+
+        Page<UserDTO> response = service.findAll(0, 2);
+
+        assertEquals(40, response.getTotalElements());
+        assertEquals(20, response.getTotalPages());
+        assertEquals(2, response.getContent().size());
+        verify(leaderboard, times(1)).ensureLoaded();
+        verify(repository, times(0)).findAll(any(Pageable.class));
+        verify(repository, times(0)).count();
+    }
+
+    @Test
+    @Order(30)
+    @DisplayName("Consultando uma pagina depois da ultima com o total vindo do ranking em memoria")
+    public void findAllPastLastPage() {
+        when(leaderboard.page(60, 2)).thenReturn(emptyList());
+        when(leaderboard.size()).thenReturn(40);
+
+        Page<UserDTO> response = service.findAll(30, 2);
+
+        assertEquals(40, response.getTotalElements());
+        assertEquals(0, response.getContent().size());
+        verify(repository, times(0)).count();
+    }
+
 }
@@ -0,0 +1,134 @@
+package br.com.api.pitang.services;
+
+import br.com.api.pitang.data.models.Car;
+import br.com.api.pitang.data.models.User;
+import static br.com.api.pitang.factory.CarFactory.buildCars;
+import static br.com.api.pitang.factory.UserFactory.buildUsers;
+import br.com.api.pitang.repositories.CarRepository;
+import br.com.api.pitang.repositories.UserRepository;
+import java.time.LocalDateTime;
+import static java.util.Collections.singletonMap;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ActiveProfiles("test")
+@TestInstance(PER_CLASS)
+@TestMethodOrder(OrderAnnotation.class)
+@DisplayName("Testes de integracao do total de acessos dos usuarios em shards")
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class UserTotalCounterTest {
+
+    @Autowired
+    private UserTotalCounter counter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private Car car;
+
+    @BeforeAll
+    public void setUp() {
+        setField(counter, "shards", 4);
+
+        user = buildUsers().get(3);
+        user.setId(null);
+        user.setLogin("shardlogin");
+        user.setEmail("shardlogin@gmail.com");
+        user.setCreatedAt(LocalDateTime.now());
+        user.setTotalUsageCounter(0L);
+        user = userRepository.save(user);
+
+        car = buildCars().get(2);
+        car.setLicensePlate("SHD-0001");
+        car.setCreatedAt(LocalDateTime.now());
+        car.setUsageCounter(0L);
+        car.setUser(user);
+        car = carRepository.save(car);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Somando os acessos em shards sem perder incrementos na compactacao")
+    public void incrementShards() {
+        for (int i = 0; i < 20; i++)
+            transactionTemplate.executeWithoutResult(status -> counter.increment(singletonMap(user.getId(), 3L)));
+
+        assertTrue(shardRows() > 0);
+        assertEquals(60L, total());
+
+        counter.compact();
+
+        assertEquals(60L, baseTotal());
+        assertEquals(0L, shardTotal());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Corrigindo o total considerando os shards ainda nao compactados")
+    public void reconcileWithShards() {
+        jdbcTemplate.update("update car_usage_counters set usage_counter = 65 where car_id = ?", car.getId());
+        transactionTemplate.executeWithoutResult(status -> counter.increment(singletonMap(user.getId(), 5L)));
+
+        transactionTemplate.executeWithoutResult(status -> userRepository.reconcileTotalUsageCounters());
+        assertEquals(65L, total());
+
+        jdbcTemplate.update("update car_usage_counters set usage_counter = 70 where car_id = ?", car.getId());
+        transactionTemplate.executeWithoutResult(status -> userRepository.reconcileTotalUsageCounters());
+        assertEquals(70L, total());
+
+        counter.compact();
+        assertEquals(70L, baseTotal());
+    }
+
+    private long total() {
+        return baseTotal() + shardTotal();
+    }
+
+    private long baseTotal() {
+        return jdbcTemplate.queryForObject(
+                "select total_usage_counter from user_usage_counters where user_id = ?", Long.class, user.getId());
+    }
+
+    private long shardTotal() {
+        return jdbcTemplate.queryForObject(
+                "select coalesce(sum(delta), 0) from user_usage_counter_shards where user_id = ?", Long.class, user.getId());
+    }
+
+    private long shardRows() {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from user_usage_counter_shards where user_id = ?", Long.class, user.getId());
+    }
+
+    @AfterAll
+    public void deleteUser() {
+        setField(counter, "shards", 0);
+        carRepository.deleteById(car.getId());
+        userRepository.deleteById(user.getId());
+    }
+}